@@ -0,0 +1,145 @@
+package MapApp;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PathAlgorithms.AStar between random pairs of vertices. Each call
+ * takes the next pair from a fixed list, so every size is measured
+ * over the same mix of short and long routes. legacyQueue runs the
+ * same queries with the open set AStar had before the indexed heap,
+ * for comparison. Both count the vertices they expand in Expansions,
+ * which JMH prints next to the throughput.
+ *
+ * Run with: mvn -P jmh test-compile exec:exec -Djmh.include=AStarBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AStarBenchmark
+{
+    private static final int PAIRS = 256;
+
+    @Param({"grid", "geometric", "road"})
+    public String shape;
+
+    @Param({"1000", "10000", "100000"})
+    public int vertices;
+
+    private MapGraph graph;
+    private Vertex[] starts;
+    private Vertex[] ends;
+    private int next;
+
+    @Setup
+    public void load()
+    {
+        graph = SyntheticMaps.load(SyntheticMaps.generate(shape, vertices, 1));
+        CompactGraph compact = graph.getCompactGraph();
+        Random random = new Random(7);
+        starts = new Vertex[PAIRS];
+        ends = new Vertex[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            starts[i] = compact.getVertex(random.nextInt(compact.getVertexCount()));
+            ends[i] = compact.getVertex(random.nextInt(compact.getVertexCount()));
+        }
+    }
+
+    /**
+     * Vertices expanded and queries answered in each iteration; their
+     * ratio is the mean number of expansions per query.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Expansions
+    {
+        public long expanded;
+        public long queries;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            expanded = 0;
+            queries = 0;
+        }
+    }
+
+    @Benchmark
+    public Stack<Vertex> aStar(Expansions expansions)
+    {
+        int i = next++ & (PAIRS - 1);
+        PathAlgorithms search = new PathAlgorithms(starts[i], ends[i], graph);
+        Stack<Vertex> path = search.AStar();
+        expansions.expanded += search.getExpandedCount();
+        expansions.queries++;
+        return path;
+    }
+
+    @Benchmark
+    public long legacyQueue(Expansions expansions)
+    {
+        int i = next++ & (PAIRS - 1);
+        long expanded = legacy(graph.getCompactGraph(), starts[i].getId(), ends[i].getId());
+        expansions.expanded += expanded;
+        expansions.queries++;
+        return expanded;
+    }
+
+    /**
+     * The previous open set: a PriorityQueue that received a new entry
+     * every time a distance improved and stored g + h as the distance.
+     * Returns the number of vertices expanded.
+     */
+    private static long legacy(CompactGraph compact, int start, int goal)
+    {
+        double[] distance = new double[compact.getVertexCount()];
+        boolean[] searched = new boolean[compact.getVertexCount()];
+        Arrays.fill(distance, Double.MAX_VALUE);
+        PriorityQueue<double[]> unsearched = new PriorityQueue<double[]>(11, (a, b) -> Double.compare(a[1], b[1]));
+        distance[start] = 0;
+        unsearched.add(new double[] {start, 0});
+        long expanded = 0;
+        while (!unsearched.isEmpty()) {
+            int current = (int) unsearched.poll()[0];
+            if (searched[current]) {
+                continue;
+            }
+            searched[current] = true;
+            expanded++;
+            if (current == goal) {
+                break;
+            }
+            for (int i = compact.offsets.get(current); i < compact.offsets.get(current + 1); i++) {
+                int neighbor = compact.targets.get(i);
+                if (!searched[neighbor]) {
+                    double tentative = distance[current] + compact.weights[i] + compact.euclidean(neighbor, goal);
+                    if (tentative < distance[neighbor]) {
+                        distance[neighbor] = tentative;
+                        unsearched.add(new double[] {neighbor, tentative});
+                    }
+                }
+            }
+        }
+        return expanded;
+    }
+}
@@ -0,0 +1,123 @@
+package MapApp;
+
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The genetic algorithm and its two building blocks: the random
+ * walk that creates a Chromosome and the crossover of two parents.
+ * The population is four fifths of the vertex count, so the full
+ * algorithm is only run on the smaller maps. islands runs one
+ * population per processor; compare it with geneticAlgorithm on a
+ * machine with several cores.
+ *
+ * Run with: mvn -P jmh test-compile exec:exec -Djmh.include=GeneticBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneticBenchmark
+{
+    private static final int PARENTS = 64;
+
+    @Param({"grid", "geometric", "road"})
+    public String shape;
+
+    @Param({"100", "400", "1000"})
+    public int vertices;
+
+    private MapGraph graph;
+    private double[] baseline;
+    private Vertex start;
+    private Vertex end;
+    private Chromosome[] parents;
+    private SplittableRandom random;
+
+    @Setup
+    public void load()
+    {
+        graph = SyntheticMaps.load(SyntheticMaps.generate(shape, vertices, 1));
+        CompactGraph compact = graph.getCompactGraph();
+        baseline = new double[compact.getEdgeCount()];
+        for (int e = 0; e < baseline.length; e++) {
+            baseline[e] = compact.getEdgeWeight(e);
+        }
+        /* opposite corners of the map, so the paths are long */
+        start = compact.getVertex(0);
+        end = compact.getVertex(compact.getVertexCount() - 1);
+        parents = new Chromosome[PARENTS];
+        for (int i = 0; i < PARENTS; i++) {
+            parents[i] = new Chromosome(start, end, graph);
+        }
+        random = new SplittableRandom(3);
+    }
+
+    /**
+     * The full algorithm changes edge weights in its random events, so
+     * they are restored before each of its calls. Only the benchmarks
+     * that take this state pay for that.
+     */
+    @State(Scope.Thread)
+    public static class Weights
+    {
+        @Setup(Level.Invocation)
+        public void restore(GeneticBenchmark benchmark)
+        {
+            CompactGraph compact = benchmark.graph.getCompactGraph();
+            for (int e = 0; e < benchmark.baseline.length; e++) {
+                if (compact.getEdgeWeight(e) != benchmark.baseline[e]) {
+                    benchmark.graph.setEdgeWeight(e, benchmark.baseline[e]);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Stack<Vertex> geneticAlgorithm(Weights weights)
+    {
+        return new PathAlgorithms(start, end, graph).geneticAlgorithm();
+    }
+
+    /* one island per processor, each with the full population */
+    @Benchmark
+    public Stack<Vertex> islands(Weights weights)
+    {
+        GeneticConfig config = new GeneticConfig();
+        config.setIslands(0);
+        PathAlgorithms search = new PathAlgorithms(start, end, graph);
+        search.setGeneticConfig(config);
+        return search.geneticAlgorithm();
+    }
+
+    @Benchmark
+    public Chromosome chromosome()
+    {
+        return new Chromosome(start, end, graph);
+    }
+
+    @Benchmark
+    public Chromosome crossover()
+    {
+        Chromosome mother = parents[random.nextInt(PARENTS)];
+        Chromosome father = parents[random.nextInt(PARENTS)];
+        Chromosome[] children = Chromosome.crossover(mother, father, random);
+        return children == null ? mother : children[0];
+    }
+}
@@ -0,0 +1,81 @@
+package MapApp;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a map file and building the MapGraph from it, for every
+ * generated map shape and size. The text is generated once per
+ * trial, so only the loading is measured. The parallel reader is
+ * measured on the same text written to a temporary file, on every
+ * core; the file is in the page cache after the first iteration.
+ *
+ * Run with: mvn -P jmh test-compile exec:exec -Djmh.include=MapGraphBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapGraphBenchmark
+{
+    @Param({"grid", "geometric", "road"})
+    public String shape;
+
+    @Param({"1000", "10000", "100000"})
+    public int vertices;
+
+    private byte[] text;
+
+    private File file;
+
+    @Setup
+    public void generate() throws IOException
+    {
+        text = SyntheticMaps.generate(shape, vertices, 1).getBytes(StandardCharsets.UTF_8);
+        file = File.createTempFile("map", ".txt");
+        Files.write(file.toPath(), text);
+    }
+
+    @TearDown
+    public void delete()
+    {
+        file.delete();
+    }
+
+    @Benchmark
+    public MapGraph construct() throws IOException
+    {
+        return new MapGraph(MapGraphLoader.read(new ByteArrayInputStream(text)));
+    }
+
+    @Benchmark
+    public MapGraphLoader parse() throws IOException
+    {
+        return MapGraphLoader.read(new ByteArrayInputStream(text));
+    }
+
+    @Benchmark
+    public MapGraphLoader parseParallel() throws IOException
+    {
+        return MapGraphLoader.readParallel(file, Runtime.getRuntime().availableProcessors());
+    }
+}
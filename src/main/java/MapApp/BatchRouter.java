@@ -0,0 +1,231 @@
+package MapApp;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/*Answers a file of routing queries without the GUI.
+ *
+ * Each line of the query file is "start;end", with the vertex names
+ * used in the map file; empty lines and lines starting with # are
+ * skipped. Each answer is one line, in the order of the queries:
+ * "start;end;distance;name,name,..." for a path, or
+ * "start;end;error;message" when a query cannot be answered. An
+ * unreachable end has the distance Infinity and no path.
+ *
+ * The queries are read as a stream and searched on a thread pool
+ * (virtual threads where the JDK has them). At most window queries
+ * are in flight at once, and the oldest one is written as soon as it
+ * is done, so neither the queries nor the answers are ever all held
+ * in memory.
+ *
+ * Usage: BatchRouter map.txt queries.txt [answers.txt]
+ *            [--algorithm astar|bidirectional_astar|genetic]
+ *            [--threads n] [--window n] [--platform-threads]
+ * Throughput and search latency percentiles go to standard error.
+ * The genetic algorithm changes edge weights in its random events,
+ * so it gives answers that depend on the other queries.
+ */
+public class BatchRouter {
+	private final MapGraph graph;
+	private final PathAlgorithms.Algorithm algorithm;
+	private final ExecutorService executor;
+	private final int window;
+	private final Map<String, Vertex> byName = new HashMap<String, Vertex>();
+	private final LatencyHistogram latencies = new LatencyHistogram();
+	private long errors;
+
+	public BatchRouter(MapGraph graph, PathAlgorithms.Algorithm algorithm, ExecutorService executor, int window) {
+		if (window < 1) {
+			throw new IllegalArgumentException("window must be at least 1");
+		}
+		this.graph = graph;
+		this.algorithm = algorithm;
+		this.executor = executor;
+		this.window = window;
+		CompactGraph compact = graph.getCompactGraph();
+		for (int v = 0; v < compact.getVertexCount(); v++) {
+			byName.put(compact.getVertex(v).getName(), compact.getVertex(v));
+		}
+	}
+
+	/*Virtual threads if this JDK has them (looked up reflectively,
+	 * since the code is compiled for Java 8), otherwise a fixed pool
+	 * of daemon threads
+	 */
+	public static ExecutorService newExecutor(int threads, boolean platformThreads) {
+		if (!platformThreads) {
+			try {
+				Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService) factory.invoke(null);
+			}
+			catch (ReflectiveOperationException e) {
+				/*before Java 21; use the fixed pool*/
+			}
+		}
+		return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "router");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/*Answers every query read from in, writing the answers to out in
+	 * the same order. Returns the number of queries.
+	 */
+	public long run(BufferedReader in, Writer out) throws IOException {
+		ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>(window);
+		long queries = 0;
+		String line;
+		while ((line = in.readLine()) != null) {
+			final String query = line.trim();
+			if (query.isEmpty() || query.startsWith("#")) {
+				continue;
+			}
+			if (pending.size() == window) {
+				write(pending.poll(), out);
+			}
+			pending.add(executor.submit(() -> answer(query)));
+			queries++;
+		}
+		while (!pending.isEmpty()) {
+			write(pending.poll(), out);
+		}
+		out.flush();
+		return queries;
+	}
+
+	private void write(Future<String> answer, Writer out) throws IOException {
+		try {
+			out.write(answer.get());
+			out.write('\n');
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting for a query", e);
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private String answer(String query) {
+		String[] names = query.split(";");
+		if (names.length != 2) {
+			return error(query, "expected start;end");
+		}
+		Vertex start = byName.get(names[0].trim());
+		Vertex end = byName.get(names[1].trim());
+		if (start == null || end == null) {
+			return error(query, "unknown vertex " + (start == null ? names[0] : names[1]).trim());
+		}
+		long begin = System.nanoTime();
+		Stack<Vertex> path = new PathAlgorithms(start, end, graph).findPath(algorithm);
+		latencies.record(System.nanoTime() - begin);
+		StringBuilder answer = new StringBuilder(query.length() + 16 * path.size());
+		answer.append(start.getName()).append(';').append(end.getName()).append(';');
+		if (!path.peek().equals(start)) {
+			return answer.append(Double.POSITIVE_INFINITY).append(';').toString();
+		}
+		answer.append(PathAlgorithms.pathLength(graph, path)).append(';');
+		for (int i = path.size() - 1; i >= 0; i--) {
+			answer.append(path.get(i).getName());
+			if (i > 0) {
+				answer.append(',');
+			}
+		}
+		return answer.toString();
+	}
+
+	private synchronized String error(String query, String message) {
+		errors++;
+		return query + ";error;" + message;
+	}
+
+	/*Time spent searching, per query*/
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	/*Queries that could not be parsed or named an unknown vertex*/
+	public synchronized long getErrors() {
+		return errors;
+	}
+
+	public static void main(String[] args) throws IOException {
+		RoutingMetrics.register();
+		String[] files = new String[3];
+		int fileCount = 0;
+		PathAlgorithms.Algorithm algorithm = PathAlgorithms.Algorithm.ASTAR;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int window = 0;
+		boolean platformThreads = false;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--algorithm") && i + 1 < args.length) {
+				algorithm = PathAlgorithms.Algorithm.valueOf(args[++i].toUpperCase(Locale.ROOT));
+			}
+			else if (args[i].equals("--threads") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--window") && i + 1 < args.length) {
+				window = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--platform-threads")) {
+				platformThreads = true;
+			}
+			else if (!args[i].startsWith("--") && fileCount < files.length) {
+				files[fileCount++] = args[i];
+			}
+			else {
+				fileCount = -1;
+				break;
+			}
+		}
+		if (fileCount < 2) {
+			System.err.println("usage: BatchRouter map.txt queries.txt [answers.txt] [--algorithm astar|bidirectional_astar|genetic]"
+					+ " [--threads n] [--window n] [--platform-threads]");
+			System.exit(2);
+		}
+		if (window == 0) {
+			window = 64 * threads;
+		}
+		MapGraph graph = MapSnapshot.loadOrCreate(new File(files[0]));
+		ExecutorService executor = newExecutor(threads, platformThreads);
+		BatchRouter router = new BatchRouter(graph, algorithm, executor, window);
+		long begin = System.nanoTime();
+		long queries;
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(files[1]), StandardCharsets.UTF_8), 1 << 16);
+				Writer out = new BufferedWriter(new OutputStreamWriter(
+						files[2] == null ? System.out : new FileOutputStream(files[2]), StandardCharsets.UTF_8), 1 << 16)) {
+			queries = router.run(in, out);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		double seconds = (System.nanoTime() - begin) / 1e9;
+		System.err.printf("%d queries (%d errors) in %.3f s, %.0f queries/s%n", queries, router.getErrors(), seconds,
+				queries / seconds);
+		System.err.println("search latency: " + router.getLatencies());
+	}
+}
@@ -1,106 +1,305 @@
 package MapApp;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.Vector;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 import org.jgrapht.graph.DefaultWeightedEdge;
 
 /*An object containing a path from the starting point
  * in the map to the endpoint as well as the
- * the length of the path. Implements comparable so 
+ * the length of the path. Implements comparable so
  * that its path length can be compared to the length
  * of other Chromosomes. Can be randomly mutated to
  * provide diversity in paths.
+ *
+ * The path is stored as the vertex ids of the CompactGraph, start
+ * first and end last, with the length of every prefix of the path
+ * next to it. A prefix sum goes stale when a mutation or a weight
+ * change touches the path and is recomputed the next time a
+ * crossover needs it. A step between two vertices that are not
+ * neighbors (a walk that got stuck) counts as PENALTY.
  */
 
 public class Chromosome implements Comparable<Chromosome> {
-	private Vector<Vertex> path;
-	private Vertex goal;
+	static final double PENALTY = 1000000;
+	private final CompactGraph compact;
+	private final int[] genes;
+	/*prefix[i] is the length of the path up to genes[i]; only the
+	 * first prefixValid entries are current
+	 */
+	private final double[] prefix;
+	private int prefixValid;
 	private double totaldistance;
-	
+	/*Set by the Population that indexed this Chromosome*/
+	int ticket;
+
 	/*Constructor that randomly
 	 * generates a path between the start point
-	 * and the endpoint. If no path can be found, 
-	 * adds the endpoint to the end of the path and 
+	 * and the endpoint. If no path can be found,
+	 * adds the endpoint to the end of the path and
 	 * adds 1000000 to the distance, designating it as a
 	 * poor path.
 	 */
 	public Chromosome(Vertex start, Vertex end, MapGraph graph) {
-		goal = end;
-		path = new Vector<Vertex>();
-		Set<Vertex> searched = new HashSet<Vertex>();
-		Vertex current;
-		current = start;
+		this(start, end, graph, new SplittableRandom());
+	}
+
+	/*Same as above, drawing the random steps from the given
+	 * generator so that a seeded run can be repeated
+	 */
+	public Chromosome(Vertex start, Vertex end, MapGraph graph, SplittableRandom random) {
+		compact = graph.getCompactGraph();
+		IntBuffer offsets = compact.offsets;
+		IntBuffer targets = compact.targets;
+		double[] weights = compact.weights;
+		WalkState walk = WALK.get();
+		int stamp = walk.next(compact.getVertexCount());
+		int[] searched = walk.searched;
+		int goalId = end.getId();
+		int current = start.getId();
+		searched[current] = stamp;
 		totaldistance = 0;
-		while (!current.equals(goal)) {
-			Set<Vertex> currentNeighbors = graph.getNeighbors(current);
-			Set<Vertex> unsearchedNeighbors = new HashSet<Vertex>();
-			for (Vertex neighbor: currentNeighbors) {
-				if (!searched.contains(neighbor)) {
-					unsearchedNeighbors.add(neighbor);
+		walk.append(current, 0);
+		while (current != goalId) {
+			int neighborSize = 0;
+			for (int i = offsets.get(current); i < offsets.get(current + 1); i++) {
+				if (searched[targets.get(i)] != stamp) {
+					neighborSize++;
 				}
 			}
-			int neighborSize = unsearchedNeighbors.size();
 			if (neighborSize == 0) {
-				totaldistance = totaldistance + 1000000;
-				current = goal;
-				searched.add(current);
-				path.add(current);
+				totaldistance = totaldistance + PENALTY;
+				current = goalId;
+				searched[current] = stamp;
+				walk.append(current, totaldistance);
 			}
 			else {
-				int randomIndex = new Random().nextInt(neighborSize);
-				int i = 0;
-				for (Vertex neighbor: unsearchedNeighbors) {
-					if (i == randomIndex) {
-						double weight = graph.getWeight(graph.getEdge(current, neighbor));
-						totaldistance = totaldistance + weight;
+				int randomIndex = random.nextInt(neighborSize);
+				for (int i = offsets.get(current); i < offsets.get(current + 1); i++) {
+					int neighbor = targets.get(i);
+					if (searched[neighbor] != stamp && randomIndex-- == 0) {
+						totaldistance = totaldistance + weights[i];
 						current = neighbor;
-						searched.add(current);
-						path.add(current);
+						searched[current] = stamp;
+						walk.append(current, totaldistance);
 						break;
 					}
-					i++;
 				}
-			};
+			}
+		}
+		genes = Arrays.copyOf(walk.steps, walk.count);
+		prefix = Arrays.copyOf(walk.distances, walk.count);
+		prefixValid = walk.count;
+	}
+
+	private Chromosome(CompactGraph compact, int[] genes, double totaldistance) {
+		this.compact = compact;
+		this.genes = genes;
+		this.prefix = new double[genes.length];
+		this.totaldistance = totaldistance;
+	}
+
+	/*A Chromosome with the given path of vertex ids, for tests*/
+	static Chromosome of(CompactGraph compact, int... genes) {
+		Chromosome chromosome = new Chromosome(compact, genes.clone(), 0);
+		chromosome.totaldistance = chromosome.prefix(genes.length - 1);
+		return chromosome;
+	}
+
+	/*An independent Chromosome with the same path and length*/
+	Chromosome copy() {
+		Chromosome copy = new Chromosome(compact, genes.clone(), totaldistance);
+		System.arraycopy(prefix, 0, copy.prefix, 0, prefixValid);
+		copy.prefixValid = prefixValid;
+		return copy;
+	}
+
+	/*Per-thread scratch space for the random walk: visited marks,
+	 * which use a new stamp for every walk so the array never has to
+	 * be cleared, and the steps taken so far
+	 */
+	private static final class WalkState {
+		int[] searched = new int[0];
+		int stamp;
+		int[] steps = new int[64];
+		double[] distances = new double[64];
+		int count;
+
+		int next(int size) {
+			if (searched.length < size || stamp == Integer.MAX_VALUE) {
+				searched = new int[size];
+				stamp = 0;
+			}
+			count = 0;
+			return ++stamp;
+		}
+
+		void append(int vertex, double distance) {
+			if (count == steps.length) {
+				steps = Arrays.copyOf(steps, 2 * count);
+				distances = Arrays.copyOf(distances, 2 * count);
+			}
+			steps[count] = vertex;
+			distances[count] = distance;
+			count++;
+		}
+	}
+
+	private static final ThreadLocal<WalkState> WALK = new ThreadLocal<WalkState>() {
+		@Override
+		protected WalkState initialValue() {
+			return new WalkState();
+		}
+	};
+
+	/*Per-thread position map for finding the vertices two paths
+	 * have in common, stamped like WalkState.searched
+	 */
+	private static final class Positions {
+		int[] seen = new int[0];
+		int[] position = new int[0];
+		int stamp;
+		int[] pairs = new int[64];
+
+		int next(int size) {
+			if (seen.length < size || stamp == Integer.MAX_VALUE) {
+				seen = new int[size];
+				position = new int[size];
+				stamp = 0;
+			}
+			return ++stamp;
+		}
+	}
+
+	private static final ThreadLocal<Positions> POSITIONS = new ThreadLocal<Positions>() {
+		@Override
+		protected Positions initialValue() {
+			return new Positions();
+		}
+	};
+
+	/*Finds a vertex other than the start and end that both paths
+	 * visit, picked at random, and swaps the parts of the paths
+	 * before it. The father's vertices are marked in a position map,
+	 * so the common vertices are found in one pass over each path.
+	 * The lengths of the children come from the prefix sums of the
+	 * parents. Returns null if the paths have no vertex in common.
+	 */
+	static Chromosome[] crossover(Chromosome mother, Chromosome father, SplittableRandom random) {
+		Positions positions = POSITIONS.get();
+		int stamp = positions.next(mother.compact.getVertexCount());
+		int[] seen = positions.seen;
+		int[] position = positions.position;
+		for (int j = 1; j < father.genes.length - 1; j++) {
+			seen[father.genes[j]] = stamp;
+			position[father.genes[j]] = j;
+		}
+		int common = 0;
+		for (int i = 1; i < mother.genes.length - 1; i++) {
+			int v = mother.genes[i];
+			if (seen[v] == stamp) {
+				if (2 * common == positions.pairs.length) {
+					positions.pairs = Arrays.copyOf(positions.pairs, 4 * common);
+				}
+				positions.pairs[2 * common] = i;
+				positions.pairs[2 * common + 1] = position[v];
+				common++;
+			}
+		}
+		if (common == 0) {
+			return null;
 		}
+		int pivot = random.nextInt(common);
+		int motherpivot = positions.pairs[2 * pivot];
+		int fatherpivot = positions.pairs[2 * pivot + 1];
+		return new Chromosome[] {splice(mother, motherpivot, father, fatherpivot),
+				splice(father, fatherpivot, mother, motherpivot)};
+	}
+
+	/*The genes of first before firstPivot followed by the genes of
+	 * second from secondPivot on; both pivots are the same vertex
+	 */
+	private static Chromosome splice(Chromosome first, int firstPivot, Chromosome second, int secondPivot) {
+		int tail = second.genes.length - secondPivot;
+		int[] genes = new int[firstPivot + tail];
+		System.arraycopy(first.genes, 0, genes, 0, firstPivot);
+		System.arraycopy(second.genes, secondPivot, genes, firstPivot, tail);
+		double head = first.prefix(firstPivot);
+		Chromosome child = new Chromosome(first.compact, genes,
+				head + second.totaldistance - second.prefix(secondPivot));
+		System.arraycopy(first.prefix, 0, child.prefix, 0, firstPivot + 1);
+		child.prefixValid = firstPivot + 1;
+		return child;
+	}
+
+	/*Length of the path up to genes[index], bringing stale prefix
+	 * sums up to date first
+	 */
+	private double prefix(int index) {
+		while (prefixValid <= index) {
+			int i = prefixValid;
+			prefix[i] = i == 0 ? 0 : prefix[i - 1] + step(genes[i - 1], genes[i]);
+			prefixValid++;
+		}
+		return prefix[index];
+	}
+
+	private double step(int u, int v) {
+		int edge = compact.findEdge(u, v);
+		return edge < 0 ? PENALTY : compact.edgeWeight[edge];
+	}
+
+	/*Called when the weight of an edge on the path has changed*/
+	void invalidatePrefix() {
+		prefixValid = 0;
+	}
+
+	/*Number of vertices on the path, including the start*/
+	public int getLength() {
+		return genes.length;
 	}
-	
-	public Chromosome(Vector<Vertex> path) {
-		this.path = path;
+
+	/*The id of the vertex at the given position; 0 is the start*/
+	public int getGene(int index) {
+		return genes[index];
 	}
-	
+
+	/*A copy of the path, without the start*/
 	public Vector<Vertex> getPath() {
+		Vector<Vertex> path = new Vector<Vertex>(genes.length);
+		for (int i = 1; i < genes.length; i++) {
+			path.add(compact.getVertex(genes[i]));
+		}
 		return path;
 	}
-	
-	public void setPath(Vertex vertex) {
-		path.add(vertex);
-	}
-	
+
 	public double getDistance() {
 		return totaldistance;
 	}
-	
+
 	public void setDistance(double d) {
 		this.totaldistance = d;
 	}
+
 	public boolean containsEdge(MapGraph graph, DefaultWeightedEdge edge) {
-		Vertex source = graph.getSource(edge);
-		Vertex target = graph.getTarget(edge);
-		if (path.contains(source) && path.contains(target)) {
-			if (path.indexOf(source) == path.indexOf(target) + 1 || path.indexOf(source) == path.indexOf(target)-1){
+		int source = graph.getSource(edge).getId();
+		int target = graph.getTarget(edge).getId();
+		for (int i = 1; i < genes.length; i++) {
+			int u = genes[i - 1];
+			int v = genes[i];
+			if ((u == source && v == target) || (u == target && v == source)) {
 				return true;
 			}
 		}
 		return false;
 	}
-	
+
 	public void updateDistance(double weight) {
 		totaldistance = totaldistance + weight;
 	}
-	
+
 	/*Finds a random Vertex in the path that could be
 	 * mutated into another within the specifications of the graph
 	 * (i.e. that the Vertices coming before and after this
@@ -108,42 +307,39 @@ public class Chromosome implements Comparable<Chromosome> {
 	 * produced upon mutation
 	 */
 	public double mutate(MapGraph graph) {
+		return mutate(graph, new SplittableRandom());
+	}
+
+	public double mutate(MapGraph graph, SplittableRandom random) {
 		double mutationchange = 0;
-		int pathsize = path.size();
-		if (pathsize > 2) {
-			int pathmark = new Random().nextInt(pathsize - 2) + 1;
-			Vertex mutated = path.get(pathmark);
-			Vertex parent = path.get(pathmark-1);
-			Vertex child = path.get(pathmark + 1);
-			Set<Vertex> parentneighbors = graph.getNeighbors(parent);
-			Set<Vertex> childneighbors = graph.getNeighbors(child);
-			for (Vertex neighbor: parentneighbors) {
-				if (childneighbors.contains(neighbor)) {
-					DefaultWeightedEdge firstedge = graph.getEdge(mutated, parent);
-					DefaultWeightedEdge thirdedge = graph.getEdge(neighbor, parent);
-					DefaultWeightedEdge fourthedge = graph.getEdge(neighbor, child);
-					mutationchange += graph.getWeight(thirdedge) + graph.getWeight(fourthedge) -
-										graph.getWeight(firstedge);
-					if (!child.equals(goal)) {
-						DefaultWeightedEdge secondedge = graph.getEdge(mutated, child);
-						mutationchange -= graph.getWeight(secondedge);
-					}
-					path.set(pathmark, neighbor);
+		if (genes.length > 2) {
+			int pathmark = random.nextInt(genes.length - 2) + 1;
+			int parent = genes[pathmark - 1];
+			int mutated = genes[pathmark];
+			int child = genes[pathmark + 1];
+			for (int i = compact.offsets.get(parent); i < compact.offsets.get(parent + 1); i++) {
+				int neighbor = compact.targets.get(i);
+				int fourthedge = compact.findEdge(neighbor, child);
+				if (fourthedge >= 0) {
+					mutationchange = compact.weights[i] + compact.edgeWeight[fourthedge] -
+										step(parent, mutated) - step(mutated, child);
+					genes[pathmark] = neighbor;
+					prefixValid = Math.min(prefixValid, pathmark);
 					break;
 				}
 			}
 		}
 		return mutationchange;
 	}
-	
+
 	@Override
 	public int compareTo(Chromosome other) {
 		double thisfinal = totaldistance;
 		double comparisonfinal = other.getDistance();
 		return Double.compare(thisfinal, comparisonfinal);
 	}
-	
-	/*Overrides hashcode() and equals(Object o) 
+
+	/*Overrides hashcode() and equals(Object o)
 	 * to prevent errors when using the Set
 	 * data structure
 	 */
@@ -156,13 +352,13 @@ public class Chromosome implements Comparable<Chromosome> {
             return false;
         }
         Chromosome c = (Chromosome) o;
-        return this.path.equals(c.getPath());	
+        return Arrays.equals(genes, c.genes);
 	}
-	
-	@Override 
+
+	@Override
 	public int hashCode() {
 		int result = 17;
-		result = 31*result + path.hashCode();
+		result = 31*result + Arrays.hashCode(genes);
 		return result;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,246 @@
+package MapApp;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/*An immutable compressed sparse row (CSR) view of a MapGraph.
+ * Every Vertex is given an int id, and the neighbors of vertex v
+ * are stored in targets[offsets[v]] to targets[offsets[v+1]-1],
+ * with the matching edge lengths in weights. Because the maps are
+ * undirected, every edge appears twice (once from each endpoint);
+ * edgeIds maps both of those slots back to the same edge id so that
+ * a weight change can be applied to both directions at once.
+ * The structure of the graph never changes once it has been built,
+ * only the edge weights can be updated (see MapGraph.setEdgeWeight).
+ *
+ * The structure is read through IntBuffers and DoubleBuffers. They
+ * wrap heap arrays for a parsed map, and for a map opened from a
+ * MapSnapshot they are views of the read-only mapped file, whose
+ * pages are shared by every process that opens it. Only the weights
+ * are plain arrays, since they are changed in place. The buffers are
+ * only read with absolute get(int), so threads can share them.
+ */
+public final class CompactGraph {
+	final int vertexCount;
+	final int edgeCount;
+	final IntBuffer offsets;
+	final IntBuffer targets;
+	final IntBuffer edgeIds;
+	final double[] weights;
+	final DoubleBuffer x;
+	final DoubleBuffer y;
+	/*Created on first use when the graph was opened from a
+	 * snapshot, in which case names supplies their names
+	 */
+	private final AtomicReferenceArray<Vertex> vertices;
+	private final IntFunction<String> names;
+	/*Endpoints, weight and both CSR slots of every undirected edge*/
+	final IntBuffer edgeSource;
+	final IntBuffer edgeTarget;
+	final double[] edgeWeight;
+	final IntBuffer edgeSlots;
+	/*Counts the weight changes, so that anything precomputed from
+	 * the weights can tell when it has gone out of date
+	 */
+	private volatile int weightVersion;
+	/*Idle search workspaces, shared by all threads*/
+	private final ConcurrentLinkedQueue<SearchWorkspace> workspaces = new ConcurrentLinkedQueue<SearchWorkspace>();
+
+	private CompactGraph(Vertex[] vertices, int[] edgeSource, int[] edgeTarget, double[] edgeWeight) {
+		this.vertexCount = vertices.length;
+		this.edgeCount = edgeSource.length;
+		this.vertices = new AtomicReferenceArray<Vertex>(vertices);
+		this.names = null;
+		this.edgeSource = IntBuffer.wrap(edgeSource);
+		this.edgeTarget = IntBuffer.wrap(edgeTarget);
+		this.edgeWeight = edgeWeight;
+		double[] x = new double[vertexCount];
+		double[] y = new double[vertexCount];
+		for (int v = 0; v < vertexCount; v++) {
+			x[v] = vertices[v].getX();
+			y[v] = vertices[v].getY();
+		}
+		this.x = DoubleBuffer.wrap(x);
+		this.y = DoubleBuffer.wrap(y);
+		/*Counting sort of the edge endpoints into the row offsets*/
+		int[] offsets = new int[vertexCount + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			offsets[edgeSource[e] + 1]++;
+			offsets[edgeTarget[e] + 1]++;
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			offsets[v + 1] += offsets[v];
+		}
+		int[] fill = new int[vertexCount];
+		System.arraycopy(offsets, 0, fill, 0, vertexCount);
+		int[] targets = new int[2 * edgeCount];
+		int[] edgeIds = new int[2 * edgeCount];
+		weights = new double[2 * edgeCount];
+		int[] edgeSlots = new int[2 * edgeCount];
+		for (int e = 0; e < edgeCount; e++) {
+			int s = edgeSource[e];
+			int t = edgeTarget[e];
+			int slot = fill[s]++;
+			targets[slot] = t;
+			edgeIds[slot] = e;
+			weights[slot] = edgeWeight[e];
+			edgeSlots[2 * e] = slot;
+			slot = fill[t]++;
+			targets[slot] = s;
+			edgeIds[slot] = e;
+			weights[slot] = edgeWeight[e];
+			edgeSlots[2 * e + 1] = slot;
+		}
+		this.offsets = IntBuffer.wrap(offsets);
+		this.targets = IntBuffer.wrap(targets);
+		this.edgeIds = IntBuffer.wrap(edgeIds);
+		this.edgeSlots = IntBuffer.wrap(edgeSlots);
+	}
+
+	/*Wraps buffers and arrays that were already laid out, as read
+	 * back from a MapSnapshot. Vertices are only created when they are
+	 * asked for.
+	 */
+	CompactGraph(IntBuffer offsets, IntBuffer targets, IntBuffer edgeIds, double[] weights, DoubleBuffer x, DoubleBuffer y,
+			IntBuffer edgeSource, IntBuffer edgeTarget, double[] edgeWeight, IntBuffer edgeSlots, IntFunction<String> names) {
+		this.vertexCount = x.limit();
+		this.edgeCount = edgeWeight.length;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.edgeIds = edgeIds;
+		this.weights = weights;
+		this.x = x;
+		this.y = y;
+		this.edgeSource = edgeSource;
+		this.edgeTarget = edgeTarget;
+		this.edgeWeight = edgeWeight;
+		this.edgeSlots = edgeSlots;
+		this.vertices = new AtomicReferenceArray<Vertex>(vertexCount);
+		this.names = names;
+	}
+
+	/*Builds the CSR arrays from an edge list. Vertices are given
+	 * the id of their position in the array; edge e connects
+	 * edgeSource[e] and edgeTarget[e] with length edgeWeight[e].
+	 */
+	public static CompactGraph build(Vertex[] vertices, int[] edgeSource, int[] edgeTarget, double[] edgeWeight) {
+		for (int v = 0; v < vertices.length; v++) {
+			vertices[v].setId(v);
+		}
+		return new CompactGraph(vertices, edgeSource, edgeTarget, edgeWeight);
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public Vertex getVertex(int id) {
+		Vertex v = vertices.get(id);
+		if (v == null) {
+			v = new Vertex(names.apply(id), x.get(id), y.get(id));
+			v.setId(id);
+			if (!vertices.compareAndSet(id, null, v)) {
+				v = vertices.get(id);
+			}
+		}
+		return v;
+	}
+
+	public int getDegree(int v) {
+		return offsets.get(v + 1) - offsets.get(v);
+	}
+
+	public double getX(int v) {
+		return x.get(v);
+	}
+
+	public double getY(int v) {
+		return y.get(v);
+	}
+
+	public int getEdgeSource(int edge) {
+		return edgeSource.get(edge);
+	}
+
+	public int getEdgeTarget(int edge) {
+		return edgeTarget.get(edge);
+	}
+
+	public double getEdgeWeight(int edge) {
+		return edgeWeight[edge];
+	}
+
+	/*Updates the weight of an edge in both of its CSR slots*/
+	void setEdgeWeight(int edge, double value) {
+		edgeWeight[edge] = value;
+		weights[edgeSlots.get(2 * edge)] = value;
+		weights[edgeSlots.get(2 * edge + 1)] = value;
+		weightVersion++;
+	}
+
+	public int getWeightVersion() {
+		return weightVersion;
+	}
+
+	/*A hash of the topology and current weights, used to check that
+	 * data saved for one map is loaded against the same map
+	 */
+	public long fingerprint() {
+		long hash = 1125899906842597L;
+		hash = 31 * hash + vertexCount;
+		hash = 31 * hash + edgeCount;
+		for (int e = 0; e < edgeCount; e++) {
+			hash = 31 * hash + edgeSource.get(e);
+			hash = 31 * hash + edgeTarget.get(e);
+			hash = 31 * hash + Double.doubleToLongBits(edgeWeight[e]);
+		}
+		return hash;
+	}
+
+	/*Returns the id of the edge connecting u and v, or -1 if
+	 * they are not neighbors. Scans the shorter of the two rows.
+	 */
+	public int findEdge(int u, int v) {
+		if (getDegree(u) > getDegree(v)) {
+			int swap = u;
+			u = v;
+			v = swap;
+		}
+		for (int i = offsets.get(u); i < offsets.get(u + 1); i++) {
+			if (targets.get(i) == v) {
+				return edgeIds.get(i);
+			}
+		}
+		return -1;
+	}
+
+	/*Takes a reset workspace from the pool, or creates one if
+	 * every pooled workspace is in use by another query
+	 */
+	public SearchWorkspace acquireWorkspace() {
+		SearchWorkspace workspace = workspaces.poll();
+		if (workspace == null) {
+			workspace = new SearchWorkspace(vertexCount);
+		}
+		workspace.reset();
+		return workspace;
+	}
+
+	public void releaseWorkspace(SearchWorkspace workspace) {
+		workspaces.offer(workspace);
+	}
+
+	/*Straight-line distance between two vertices*/
+	public double euclidean(int u, int v) {
+		double width = x.get(u) - x.get(v);
+		double height = y.get(u) - y.get(v);
+		return Math.sqrt(width * width + height * height);
+	}
+}
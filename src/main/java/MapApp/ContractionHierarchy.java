@@ -0,0 +1,565 @@
+package MapApp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Stack;
+import java.util.stream.IntStream;
+
+/*A contraction hierarchy built from the CompactGraph of a MapGraph.
+ * Vertices are contracted one level at a time; when a vertex is
+ * removed, a shortcut edge is added between two of its neighbors
+ * unless a path at least as short (a witness) exists without it.
+ * Every edge is stored once, at the endpoint that was contracted
+ * first, which gives the "upward" graph that both halves of the
+ * bidirectional query search.
+ *
+ * Preprocessing runs on all cores: each round picks the vertices whose
+ * priority (edge difference) is lowest within two hops, contracts
+ * them in parallel, and then recomputes the priorities of their
+ * neighbors in parallel. Picking vertices that are two hops apart
+ * means no two of them share a neighbor, so their contractions never
+ * touch the same adjacency lists.
+ *
+ * The hierarchy is only valid for the weights it was built with;
+ * isCurrent() turns false after MapGraph.setEdgeWeight.
+ */
+public class ContractionHierarchy {
+	private static final int MAGIC = 0x43484D50;
+	private static final int FORMAT = 1;
+	/*Vertices settled per witness search before giving up and adding
+	 * the shortcut; priorities only need an estimate, so the search
+	 * used to rank vertices stops sooner
+	 */
+	private static final int WITNESS_LIMIT = 100;
+	private static final int ESTIMATE_LIMIT = 20;
+
+	private final CompactGraph compact;
+	private final int[] rank;
+	private final int[] upOffsets;
+	private final int[] upTargets;
+	private final double[] upWeights;
+	private final int[] upMiddle;
+	private final int weightVersion;
+
+	private ContractionHierarchy(CompactGraph compact, int[] rank, int[] upOffsets, int[] upTargets,
+			double[] upWeights, int[] upMiddle) {
+		this.compact = compact;
+		this.rank = rank;
+		this.upOffsets = upOffsets;
+		this.upTargets = upTargets;
+		this.upWeights = upWeights;
+		this.upMiddle = upMiddle;
+		this.weightVersion = compact.getWeightVersion();
+	}
+
+	/*True while the edge weights of the graph are the ones the
+	 * hierarchy was built with
+	 */
+	public boolean isCurrent() {
+		return weightVersion == compact.getWeightVersion();
+	}
+
+	public int getShortcutCount() {
+		int shortcuts = 0;
+		for (int i = 0; i < upMiddle.length; i++) {
+			if (upMiddle[i] >= 0) {
+				shortcuts++;
+			}
+		}
+		return shortcuts;
+	}
+
+	/*Contracts every vertex of the graph*/
+	public static ContractionHierarchy build(MapGraph graph) {
+		return new Builder(graph.getCompactGraph()).run();
+	}
+
+	/*Bidirectional Dijkstra on the upward graph. Returns the path in
+	 * the same Stack<Vertex> format as PathAlgorithms.AStar (start
+	 * on top), or a Stack with only the end if it cannot be reached.
+	 */
+	public Stack<Vertex> route(Vertex start, Vertex end) {
+		return route(start, end, new long[4]);
+	}
+
+	/*As route(start, end), adding the vertices settled, heap pushes,
+	 * decrease-keys and upward edges looked at to work[0] to work[3]
+	 */
+	Stack<Vertex> route(Vertex start, Vertex end, long[] work) {
+		int source = start.getId();
+		int target = end.getId();
+		SearchWorkspace forward = compact.acquireWorkspace();
+		SearchWorkspace backward = compact.acquireWorkspace();
+		try {
+			IndexedHeap forwardQueue = forward.getOpenSet();
+			IndexedHeap backwardQueue = backward.getOpenSet();
+			forward.set(source, 0, -1);
+			forwardQueue.push(source, 0);
+			backward.set(target, 0, -1);
+			backwardQueue.push(target, 0);
+			double best = Double.MAX_VALUE;
+			int meeting = -1;
+			while (true) {
+				boolean forwardDone = forwardQueue.isEmpty() || forwardQueue.peekKey() >= best;
+				boolean backwardDone = backwardQueue.isEmpty() || backwardQueue.peekKey() >= best;
+				if (forwardDone && backwardDone) {
+					break;
+				}
+				if (!forwardDone) {
+					int v = settle(forward, forwardQueue);
+					work[0]++;
+					work[3] += upOffsets[v + 1] - upOffsets[v];
+					if (backward.isReached(v) && forward.getDistance(v) + backward.getDistance(v) < best) {
+						best = forward.getDistance(v) + backward.getDistance(v);
+						meeting = v;
+					}
+				}
+				if (!backwardDone) {
+					int v = settle(backward, backwardQueue);
+					work[0]++;
+					work[3] += upOffsets[v + 1] - upOffsets[v];
+					if (forward.isReached(v) && forward.getDistance(v) + backward.getDistance(v) < best) {
+						best = forward.getDistance(v) + backward.getDistance(v);
+						meeting = v;
+					}
+				}
+			}
+			work[1] += forwardQueue.getPushes() + backwardQueue.getPushes();
+			work[2] += forwardQueue.getDecreases() + backwardQueue.getDecreases();
+			return unpack(forward, backward, meeting, end);
+		}
+		finally {
+			compact.releaseWorkspace(forward);
+			compact.releaseWorkspace(backward);
+		}
+	}
+
+	/*Settles the closest queued vertex and relaxes its upward edges*/
+	private int settle(SearchWorkspace workspace, IndexedHeap queue) {
+		int v = queue.pop();
+		workspace.close(v);
+		double distance = workspace.getDistance(v);
+		for (int i = upOffsets[v]; i < upOffsets[v + 1]; i++) {
+			int u = upTargets[i];
+			double tentative = distance + upWeights[i];
+			if (tentative < workspace.getDistance(u)) {
+				workspace.set(u, tentative, v);
+				queue.push(u, tentative);
+			}
+		}
+		return v;
+	}
+
+	private Stack<Vertex> unpack(SearchWorkspace forward, SearchWorkspace backward, int meeting, Vertex end) {
+		Stack<Vertex> path = new Stack<Vertex>();
+		if (meeting < 0) {
+			path.push(end);
+			return path;
+		}
+		/*Upward edges from the start to the meeting vertex, then down to the end*/
+		int[] hops = new int[16];
+		int count = 0;
+		for (int v = meeting; v >= 0; v = forward.getPrevious(v)) {
+			if (count == hops.length) {
+				hops = Arrays.copyOf(hops, 2 * count);
+			}
+			hops[count++] = v;
+		}
+		IntList vertices = new IntList();
+		vertices.add(hops[count - 1]);
+		for (int i = count - 1; i > 0; i--) {
+			unpackEdge(hops[i], hops[i - 1], vertices);
+		}
+		for (int v = meeting; backward.getPrevious(v) >= 0; v = backward.getPrevious(v)) {
+			unpackEdge(v, backward.getPrevious(v), vertices);
+		}
+		for (int i = vertices.size - 1; i >= 0; i--) {
+			path.push(compact.getVertex(vertices.values[i]));
+		}
+		return path;
+	}
+
+	/*Appends the original vertices on the edge from a to b, excluding a*/
+	private void unpackEdge(int a, int b, IntList out) {
+		int lower = rank[a] < rank[b] ? a : b;
+		int upper = lower == a ? b : a;
+		int slot = -1;
+		for (int i = upOffsets[lower]; i < upOffsets[lower + 1]; i++) {
+			if (upTargets[i] == upper) {
+				slot = i;
+				break;
+			}
+		}
+		int middle = upMiddle[slot];
+		if (middle < 0) {
+			out.add(b);
+		}
+		else {
+			unpackEdge(a, middle, out);
+			unpackEdge(middle, b, out);
+		}
+	}
+
+	/*Writes the hierarchy together with a fingerprint of the graph*/
+	public void save(File file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT);
+			out.writeInt(compact.getVertexCount());
+			out.writeInt(upTargets.length);
+			out.writeLong(compact.fingerprint());
+			for (int i = 0; i < rank.length; i++) {
+				out.writeInt(rank[i]);
+			}
+			for (int i = 0; i < upOffsets.length; i++) {
+				out.writeInt(upOffsets[i]);
+			}
+			for (int i = 0; i < upTargets.length; i++) {
+				out.writeInt(upTargets[i]);
+				out.writeDouble(upWeights[i]);
+				out.writeInt(upMiddle[i]);
+			}
+		}
+	}
+
+	/*Reads a hierarchy written by save(). Fails if it was built for
+	 * a different map or for different edge weights.
+	 */
+	public static ContractionHierarchy load(File file, MapGraph graph) throws IOException {
+		CompactGraph compact = graph.getCompactGraph();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+				throw new IOException(file + " is not a contraction hierarchy");
+			}
+			int vertexCount = in.readInt();
+			int edgeCount = in.readInt();
+			if (vertexCount != compact.getVertexCount() || in.readLong() != compact.fingerprint()) {
+				throw new IOException(file + " was built for a different map or different edge weights");
+			}
+			int[] rank = new int[vertexCount];
+			for (int i = 0; i < vertexCount; i++) {
+				rank[i] = in.readInt();
+			}
+			int[] upOffsets = new int[vertexCount + 1];
+			for (int i = 0; i <= vertexCount; i++) {
+				upOffsets[i] = in.readInt();
+			}
+			int[] upTargets = new int[edgeCount];
+			double[] upWeights = new double[edgeCount];
+			int[] upMiddle = new int[edgeCount];
+			for (int i = 0; i < edgeCount; i++) {
+				upTargets[i] = in.readInt();
+				upWeights[i] = in.readDouble();
+				upMiddle[i] = in.readInt();
+			}
+			return new ContractionHierarchy(compact, rank, upOffsets, upTargets, upWeights, upMiddle);
+		}
+	}
+
+	/*A growable int array*/
+	private static final class IntList {
+		int[] values = new int[16];
+		int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, 2 * size);
+			}
+			values[size++] = value;
+		}
+	}
+
+	/*Shortcuts found while contracting one vertex*/
+	private static final class Shortcuts {
+		int[] from = new int[8];
+		int[] to = new int[8];
+		double[] weight = new double[8];
+		int size;
+
+		void add(int u, int v, double w) {
+			if (size == from.length) {
+				from = Arrays.copyOf(from, 2 * size);
+				to = Arrays.copyOf(to, 2 * size);
+				weight = Arrays.copyOf(weight, 2 * size);
+			}
+			from[size] = u;
+			to[size] = v;
+			weight[size] = w;
+			size++;
+		}
+	}
+
+	/*The contraction itself. The remaining graph is kept as one
+	 * adjacency list per vertex, holding only neighbors that have
+	 * not been contracted yet.
+	 */
+	private static final class Builder {
+		private final CompactGraph compact;
+		private final int vertexCount;
+		private final int[][] adjacent;
+		private final double[][] adjacentWeight;
+		private final int[][] adjacentMiddle;
+		private final int[] degree;
+		private final int[] deleted;
+		private final int[] priority;
+		private final boolean[] contracted;
+		/*Vertices being contracted in the current round, which witness searches avoid*/
+		private final boolean[] inRound;
+		private final int[] rank;
+		private final int[][] up;
+		private final double[][] upWeight;
+		private final int[][] upMid;
+		private final int[] upDegree;
+		private final ThreadLocal<SearchWorkspace> witness;
+
+		Builder(final CompactGraph compact) {
+			this.compact = compact;
+			vertexCount = compact.getVertexCount();
+			adjacent = new int[vertexCount][];
+			adjacentWeight = new double[vertexCount][];
+			adjacentMiddle = new int[vertexCount][];
+			degree = new int[vertexCount];
+			deleted = new int[vertexCount];
+			priority = new int[vertexCount];
+			contracted = new boolean[vertexCount];
+			inRound = new boolean[vertexCount];
+			rank = new int[vertexCount];
+			up = new int[vertexCount][];
+			upWeight = new double[vertexCount][];
+			upMid = new int[vertexCount][];
+			upDegree = new int[vertexCount];
+			for (int v = 0; v < vertexCount; v++) {
+				int size = compact.getDegree(v);
+				adjacent[v] = new int[Math.max(size, 2)];
+				adjacentWeight[v] = new double[Math.max(size, 2)];
+				adjacentMiddle[v] = new int[Math.max(size, 2)];
+			}
+			for (int e = 0; e < compact.getEdgeCount(); e++) {
+				connect(compact.edgeSource.get(e), compact.edgeTarget.get(e), compact.edgeWeight[e], -1);
+			}
+			witness = new ThreadLocal<SearchWorkspace>() {
+				@Override
+				protected SearchWorkspace initialValue() {
+					return new SearchWorkspace(compact.getVertexCount());
+				}
+			};
+		}
+
+		ContractionHierarchy run() {
+			IntStream.range(0, vertexCount).parallel().forEach(v -> priority[v] = simulate(v));
+			int[] remaining = new int[vertexCount];
+			for (int v = 0; v < vertexCount; v++) {
+				remaining[v] = v;
+			}
+			int remainingCount = vertexCount;
+			int level = 0;
+			while (remainingCount > 0) {
+				final int[] candidates = Arrays.copyOf(remaining, remainingCount);
+				final int[] selected = IntStream.of(candidates).parallel().filter(this::isLocalMinimum).toArray();
+				for (int i = 0; i < selected.length; i++) {
+					inRound[selected[i]] = true;
+				}
+				final Shortcuts[] found = new Shortcuts[selected.length];
+				/*Witness searches only read the remaining graph, and only
+				 * use vertices that will still be there after this round
+				 */
+				IntStream.range(0, selected.length).parallel().forEach(i -> {
+					Shortcuts shortcuts = new Shortcuts();
+					shortcuts(selected[i], WITNESS_LIMIT, shortcuts);
+					found[i] = shortcuts;
+				});
+				/*Each selected vertex owns its neighbors' adjacency lists*/
+				IntStream.range(0, selected.length).parallel().forEach(i -> remove(selected[i], found[i]));
+				for (int i = 0; i < selected.length; i++) {
+					rank[selected[i]] = level++;
+				}
+				int next = 0;
+				for (int i = 0; i < remainingCount; i++) {
+					if (!contracted[remaining[i]]) {
+						remaining[next++] = remaining[i];
+					}
+				}
+				remainingCount = next;
+				IntStream.of(selected).flatMap(v -> IntStream.of(Arrays.copyOf(up[v], upDegree[v])))
+						.distinct().parallel().forEach(u -> priority[u] = simulate(u));
+			}
+			return assemble();
+		}
+
+		/*Edge difference: shortcuts added minus edges removed, plus
+		 * the number of neighbors already contracted, which spreads
+		 * the contraction evenly over the map
+		 */
+		private int simulate(int v) {
+			Shortcuts shortcuts = new Shortcuts();
+			shortcuts(v, ESTIMATE_LIMIT, shortcuts);
+			return shortcuts.size - degree[v] + deleted[v];
+		}
+
+		private boolean less(int a, int b) {
+			return priority[a] < priority[b] || (priority[a] == priority[b] && a < b);
+		}
+
+		/*True if no remaining vertex within two hops has a lower priority*/
+		private boolean isLocalMinimum(int v) {
+			for (int i = 0; i < degree[v]; i++) {
+				int u = adjacent[v][i];
+				if (less(u, v)) {
+					return false;
+				}
+				for (int j = 0; j < degree[u]; j++) {
+					int w = adjacent[u][j];
+					if (w != v && less(w, v)) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		/*Finds the shortcuts needed to contract v: for each pair of
+		 * neighbors, a limited Dijkstra that avoids v looks for a path
+		 * no longer than the one through v
+		 */
+		private void shortcuts(int v, int settleLimit, Shortcuts out) {
+			int size = degree[v];
+			int[] neighbors = adjacent[v];
+			double[] weights = adjacentWeight[v];
+			SearchWorkspace workspace = witness.get();
+			for (int i = 0; i < size - 1; i++) {
+				int u = neighbors[i];
+				double limit = 0;
+				for (int j = i + 1; j < size; j++) {
+					limit = Math.max(limit, weights[i] + weights[j]);
+				}
+				workspace.reset();
+				IndexedHeap queue = workspace.getOpenSet();
+				workspace.set(u, 0, -1);
+				queue.push(u, 0);
+				int settled = 0;
+				int targets = size - 1 - i;
+				while (!queue.isEmpty() && settled < settleLimit && targets > 0) {
+					int x = queue.pop();
+					double distance = workspace.getDistance(x);
+					if (distance > limit) {
+						break;
+					}
+					settled++;
+					for (int j = i + 1; j < size; j++) {
+						if (neighbors[j] == x) {
+							targets--;
+							break;
+						}
+					}
+					for (int k = 0; k < degree[x]; k++) {
+						int y = adjacent[x][k];
+						if (y == v || inRound[y]) {
+							continue;
+						}
+						double tentative = distance + adjacentWeight[x][k];
+						if (tentative < workspace.getDistance(y)) {
+							workspace.set(y, tentative, x);
+							queue.push(y, tentative);
+						}
+					}
+				}
+				for (int j = i + 1; j < size; j++) {
+					double via = weights[i] + weights[j];
+					if (workspace.getDistance(neighbors[j]) > via) {
+						out.add(u, neighbors[j], via);
+					}
+				}
+			}
+		}
+
+		/*Turns v's remaining edges into upward edges, detaches v from
+		 * its neighbors and inserts the shortcuts between them
+		 */
+		private void remove(int v, Shortcuts shortcuts) {
+			contracted[v] = true;
+			int size = degree[v];
+			up[v] = Arrays.copyOf(adjacent[v], size);
+			upWeight[v] = Arrays.copyOf(adjacentWeight[v], size);
+			upMid[v] = Arrays.copyOf(adjacentMiddle[v], size);
+			upDegree[v] = size;
+			for (int i = 0; i < size; i++) {
+				int u = adjacent[v][i];
+				detach(u, v);
+				deleted[u]++;
+			}
+			for (int i = 0; i < shortcuts.size; i++) {
+				connect(shortcuts.from[i], shortcuts.to[i], shortcuts.weight[i], v);
+			}
+			adjacent[v] = null;
+			adjacentWeight[v] = null;
+			adjacentMiddle[v] = null;
+			degree[v] = 0;
+		}
+
+		private void detach(int u, int v) {
+			int last = degree[u] - 1;
+			for (int i = 0; i <= last; i++) {
+				if (adjacent[u][i] == v) {
+					adjacent[u][i] = adjacent[u][last];
+					adjacentWeight[u][i] = adjacentWeight[u][last];
+					adjacentMiddle[u][i] = adjacentMiddle[u][last];
+					degree[u] = last;
+					return;
+				}
+			}
+		}
+
+		/*Adds the edge in both directions, or shortens an existing one*/
+		private void connect(int a, int b, double weight, int middle) {
+			link(a, b, weight, middle);
+			link(b, a, weight, middle);
+		}
+
+		private void link(int a, int b, double weight, int middle) {
+			for (int i = 0; i < degree[a]; i++) {
+				if (adjacent[a][i] == b) {
+					if (weight < adjacentWeight[a][i]) {
+						adjacentWeight[a][i] = weight;
+						adjacentMiddle[a][i] = middle;
+					}
+					return;
+				}
+			}
+			int size = degree[a];
+			if (size == adjacent[a].length) {
+				adjacent[a] = Arrays.copyOf(adjacent[a], 2 * size);
+				adjacentWeight[a] = Arrays.copyOf(adjacentWeight[a], 2 * size);
+				adjacentMiddle[a] = Arrays.copyOf(adjacentMiddle[a], 2 * size);
+			}
+			adjacent[a][size] = b;
+			adjacentWeight[a][size] = weight;
+			adjacentMiddle[a][size] = middle;
+			degree[a] = size + 1;
+		}
+
+		/*Packs the upward edges into CSR arrays*/
+		private ContractionHierarchy assemble() {
+			int[] offsets = new int[vertexCount + 1];
+			for (int v = 0; v < vertexCount; v++) {
+				offsets[v + 1] = offsets[v] + upDegree[v];
+			}
+			int total = offsets[vertexCount];
+			int[] targets = new int[total];
+			double[] weights = new double[total];
+			int[] middle = new int[total];
+			for (int v = 0; v < vertexCount; v++) {
+				System.arraycopy(up[v], 0, targets, offsets[v], upDegree[v]);
+				System.arraycopy(upWeight[v], 0, weights, offsets[v], upDegree[v]);
+				System.arraycopy(upMid[v], 0, middle, offsets[v], upDegree[v]);
+			}
+			return new ContractionHierarchy(compact, rank, offsets, targets, weights, middle);
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package MapApp;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+import java.util.stream.IntStream;
+
+/*Shortest distances between every source and every target in one
+ * dense table, for when many pairs are needed at once.
+ *
+ * Instead of one A* per pair, the matrix runs one Dijkstra per
+ * source, in parallel unless asked otherwise, each stopping as soon as every target has
+ * been settled. The map is undirected, so when there are fewer
+ * targets than sources the searches start from the targets instead
+ * and the result is read transposed.
+ *
+ * Distances are stored row by row in a double[]; an unreachable
+ * pair has Double.MAX_VALUE, as in SearchWorkspace. The paths
+ * themselves are only kept if asked for, since they cost one int per
+ * vertex of the map for every search. Otherwise getPath runs an A*
+ * for the pair when it is called.
+ */
+public final class DistanceMatrix {
+	private final MapGraph graph;
+	private final CompactGraph compact;
+	private final int[] sources;
+	private final int[] targets;
+	private final double[] distances;
+	/*previous[r] is the shortest path tree of search r, or null*/
+	private final int[][] previous;
+	private final boolean transposed;
+	private final int weightVersion;
+
+	private DistanceMatrix(MapGraph graph, int[] sources, int[] targets, boolean keepPaths) {
+		this.graph = graph;
+		this.compact = graph.getCompactGraph();
+		this.sources = sources;
+		this.targets = targets;
+		this.distances = new double[sources.length * targets.length];
+		this.transposed = targets.length < sources.length;
+		this.previous = keepPaths ? new int[transposed ? targets.length : sources.length][] : null;
+		this.weightVersion = compact.getWeightVersion();
+	}
+
+	/*Distances from every vertex of sites to every other*/
+	public static DistanceMatrix compute(MapGraph graph, List<Vertex> sites) {
+		return compute(graph, sites, sites, false);
+	}
+
+	/*Distances from every source to every target. With keepPaths,
+	 * the shortest path trees are kept so that getPath needs no
+	 * further search.
+	 */
+	public static DistanceMatrix compute(MapGraph graph, List<Vertex> sources, List<Vertex> targets, boolean keepPaths) {
+		return compute(graph, sources, targets, keepPaths, true);
+	}
+
+	/*Same as compute(graph, sources, targets, keepPaths); without
+	 * parallel, every search runs on the calling thread instead of the
+	 * common ForkJoinPool, for callers that bound their own threads
+	 */
+	public static DistanceMatrix compute(MapGraph graph, List<Vertex> sources, List<Vertex> targets, boolean keepPaths,
+			boolean parallel) {
+		DistanceMatrix matrix = new DistanceMatrix(graph, ids(sources), ids(targets), keepPaths);
+		matrix.fill(parallel);
+		return matrix;
+	}
+
+	private static int[] ids(List<Vertex> vertices) {
+		int[] ids = new int[vertices.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = vertices.get(i).getId();
+		}
+		return ids;
+	}
+
+	private void fill(boolean parallel) {
+		final int[] roots = transposed ? targets : sources;
+		final int[] goals = transposed ? sources : targets;
+		final boolean[] isGoal = new boolean[compact.getVertexCount()];
+		int distinct = 0;
+		for (int v: goals) {
+			if (!isGoal[v]) {
+				isGoal[v] = true;
+				distinct++;
+			}
+		}
+		final int goalCount = distinct;
+		IntStream searches = IntStream.range(0, roots.length);
+		(parallel ? searches.parallel() : searches).forEach(r -> {
+			SearchWorkspace workspace = compact.acquireWorkspace();
+			try {
+				search(workspace, roots[r], isGoal, goalCount);
+				for (int k = 0; k < goals.length; k++) {
+					double distance = workspace.getDistance(goals[k]);
+					if (transposed) {
+						distances[k * targets.length + r] = distance;
+					}
+					else {
+						distances[r * targets.length + k] = distance;
+					}
+				}
+				if (previous != null) {
+					int[] tree = new int[compact.getVertexCount()];
+					for (int v = 0; v < tree.length; v++) {
+						tree[v] = workspace.getPrevious(v);
+					}
+					previous[r] = tree;
+				}
+			}
+			finally {
+				compact.releaseWorkspace(workspace);
+			}
+		});
+	}
+
+	/*PathAlgorithms.shortestPathTree, stopping once every goal is settled*/
+	private void search(SearchWorkspace workspace, int root, boolean[] isGoal, int goalCount) {
+		IntBuffer offsets = compact.offsets;
+		IntBuffer neighbors = compact.targets;
+		double[] weights = compact.weights;
+		IndexedHeap queue = workspace.getOpenSet();
+		workspace.set(root, 0, -1);
+		queue.push(root, 0);
+		int remaining = goalCount;
+		while (!queue.isEmpty()) {
+			int current = queue.pop();
+			workspace.close(current);
+			if (isGoal[current] && --remaining == 0) {
+				break;
+			}
+			double currentDistance = workspace.getDistance(current);
+			for (int i = offsets.get(current); i < offsets.get(current + 1); i++) {
+				int neighbor = neighbors.get(i);
+				double tentativeDistance = currentDistance + weights[i];
+				if (tentativeDistance < workspace.getDistance(neighbor)) {
+					workspace.set(neighbor, tentativeDistance, current);
+					queue.push(neighbor, tentativeDistance);
+				}
+			}
+		}
+	}
+
+	public int getRowCount() {
+		return sources.length;
+	}
+
+	public int getColumnCount() {
+		return targets.length;
+	}
+
+	/*Distance from source i to target j, or Double.MAX_VALUE*/
+	public double get(int i, int j) {
+		return distances[i * targets.length + j];
+	}
+
+	/*The whole table, row by row: entry (i, j) is at
+	 * i * getColumnCount() + j. The array is shared, not copied.
+	 */
+	public double[] getDistances() {
+		return distances;
+	}
+
+	/*Whether no edge weight has changed since the matrix was computed*/
+	public boolean isCurrent() {
+		return compact.getWeightVersion() == weightVersion;
+	}
+
+	/*The shortest path from source i to target j in the same format
+	 * as PathAlgorithms.AStar: the source on top of the Stack, or only
+	 * the target if it cannot be reached. Uses the kept trees if there
+	 * are any and the weights have not changed since; otherwise runs
+	 * an A* for the pair.
+	 */
+	public Stack<Vertex> getPath(int i, int j) {
+		if (previous == null || !isCurrent()) {
+			return new PathAlgorithms(compact.getVertex(sources[i]), compact.getVertex(targets[j]), graph).AStar();
+		}
+		Stack<Vertex> path = new Stack<Vertex>();
+		if (get(i, j) == Double.MAX_VALUE) {
+			path.push(compact.getVertex(targets[j]));
+			return path;
+		}
+		if (transposed) {
+			/*the tree is rooted at the target, so it leads from the
+			 * source to the target; the source goes on top last
+			 */
+			List<Vertex> walk = new ArrayList<Vertex>();
+			for (int v = sources[i]; v >= 0; v = previous[j][v]) {
+				walk.add(compact.getVertex(v));
+			}
+			for (int k = walk.size() - 1; k >= 0; k--) {
+				path.push(walk.get(k));
+			}
+		}
+		else {
+			for (int v = targets[j]; v >= 0; v = previous[i][v]) {
+				path.push(compact.getVertex(v));
+			}
+		}
+		return path;
+	}
+}
@@ -0,0 +1,9 @@
+package MapApp;
+
+/*Notified by MapGraph.setEdgeWeight after the weight of an edge has
+ * changed, on the thread that changed it. Edges are identified by
+ * their CompactGraph edge id.
+ */
+public interface EdgeWeightListener {
+	void edgeWeightChanged(int edge, double oldWeight, double newWeight);
+}
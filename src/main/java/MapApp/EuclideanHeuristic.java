@@ -0,0 +1,18 @@
+package MapApp;
+
+/*The straight-line distance to the goal. This is only a lower bound
+ * when edge weights are at least as long as the straight line between
+ * their endpoints, which random events do not guarantee.
+ */
+public class EuclideanHeuristic implements Heuristic {
+	private final CompactGraph compact;
+
+	public EuclideanHeuristic(CompactGraph compact) {
+		this.compact = compact;
+	}
+
+	@Override
+	public double estimate(int vertex, int goal) {
+		return compact.euclidean(vertex, goal);
+	}
+}
@@ -0,0 +1,91 @@
+package MapApp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/*Keeps what was loaded from recently used files in memory, so that
+ * opening the same file again does not read and parse it again.
+ *
+ * An entry is keyed by the canonical path of the file and is only
+ * used while the file still has the size and modification time it
+ * had when it was loaded; otherwise the file is loaded again. The
+ * least recently used entries are dropped beyond the capacity.
+ */
+public class FileCache<T> {
+	private final Function<File, T> loader;
+	private final int capacity;
+	private final LinkedHashMap<String, CachedFile<T>> entries;
+	private long hits;
+	private long misses;
+
+	public FileCache(Function<File, T> loader, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.loader = loader;
+		this.capacity = capacity;
+		entries = new LinkedHashMap<String, CachedFile<T>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedFile<T>> eldest) {
+				return size() > FileCache.this.capacity;
+			}
+		};
+	}
+
+	/*What the loader returned for the file, loading it unless the
+	 * same version of the file is cached
+	 */
+	public synchronized T get(File file) {
+		String path;
+		try {
+			path = file.getCanonicalPath();
+		}
+		catch (IOException e) {
+			path = file.getAbsolutePath();
+		}
+		long size = file.length();
+		long modified = file.lastModified();
+		CachedFile<T> entry = entries.get(path);
+		if (entry != null && entry.size == size && entry.modified == modified) {
+			hits++;
+			return entry.value;
+		}
+		misses++;
+		T value = loader.apply(file);
+		entries.put(path, new CachedFile<T>(size, modified, value));
+		return value;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	private static final class CachedFile<T> {
+		final long size;
+		final long modified;
+		final T value;
+
+		CachedFile(long size, long modified, T value) {
+			this.size = size;
+			this.modified = modified;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package MapApp;
+
+/*Settings for a GeneticEngine run. The defaults keep the numbers
+ * the genetic algorithm has always used: 50 generations, a
+ * population of four fifths of the vertex count, the best tenth kept
+ * every generation, a tenth mutated, and a random event every 9
+ * generations.
+ */
+public class GeneticConfig {
+	private int generations = 50;
+	private int populationSize;
+	private double eliteFraction = 0.1;
+	private double mutationRate = 0.1;
+	private double immigrantFraction = 0.5;
+	private int tournamentSize = 3;
+	private int eventInterval = 9;
+	private Long seed;
+	private int islands = 1;
+	private int migrationInterval = 5;
+	private int migrants = 2;
+
+	public int getGenerations() {
+		return generations;
+	}
+
+	public void setGenerations(int generations) {
+		if (generations < 1) {
+			throw new IllegalArgumentException("generations must be at least 1");
+		}
+		this.generations = generations;
+	}
+
+	/*0, the default, means four fifths of the number of vertices*/
+	public int getPopulationSize() {
+		return populationSize;
+	}
+
+	public void setPopulationSize(int populationSize) {
+		if (populationSize < 0) {
+			throw new IllegalArgumentException("population size cannot be negative");
+		}
+		this.populationSize = populationSize;
+	}
+
+	/*The population size used for a map with this many vertices*/
+	public int populationSizeFor(int vertexCount) {
+		int size = populationSize > 0 ? populationSize : (4 * vertexCount) / 5;
+		return Math.max(size, 4);
+	}
+
+	/*Share of the population that survives each generation unchanged*/
+	public double getEliteFraction() {
+		return eliteFraction;
+	}
+
+	public void setEliteFraction(double eliteFraction) {
+		this.eliteFraction = fraction(eliteFraction, "elite fraction");
+	}
+
+	/*Chance that a new member of the population is mutated*/
+	public double getMutationRate() {
+		return mutationRate;
+	}
+
+	public void setMutationRate(double mutationRate) {
+		this.mutationRate = fraction(mutationRate, "mutation rate");
+	}
+
+	/*Share of the non-elite places filled with new random walks
+	 * rather than with children of the current population
+	 */
+	public double getImmigrantFraction() {
+		return immigrantFraction;
+	}
+
+	public void setImmigrantFraction(double immigrantFraction) {
+		this.immigrantFraction = fraction(immigrantFraction, "immigrant fraction");
+	}
+
+	/*Number of members drawn for each parent; the shortest one wins*/
+	public int getTournamentSize() {
+		return tournamentSize;
+	}
+
+	public void setTournamentSize(int tournamentSize) {
+		if (tournamentSize < 1) {
+			throw new IllegalArgumentException("tournament size must be at least 1");
+		}
+		this.tournamentSize = tournamentSize;
+	}
+
+	/*Generations between random events, or 0 for none*/
+	public int getEventInterval() {
+		return eventInterval;
+	}
+
+	public void setEventInterval(int eventInterval) {
+		if (eventInterval < 0) {
+			throw new IllegalArgumentException("event interval cannot be negative");
+		}
+		this.eventInterval = eventInterval;
+	}
+
+	/*null, the default, means a different run every time*/
+	public Long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(Long seed) {
+		this.seed = seed;
+	}
+
+	/*Number of populations evolved side by side, or 0 for one per
+	 * processor. Each island has the full population size.
+	 */
+	public int getIslands() {
+		return islands;
+	}
+
+	public void setIslands(int islands) {
+		if (islands < 0) {
+			throw new IllegalArgumentException("islands cannot be negative");
+		}
+		this.islands = islands;
+	}
+
+	/*The number of islands used on a machine with this many processors*/
+	public int islandsFor(int processors) {
+		return islands > 0 ? islands : Math.max(processors, 1);
+	}
+
+	/*Generations between exchanges of the best paths between islands*/
+	public int getMigrationInterval() {
+		return migrationInterval;
+	}
+
+	public void setMigrationInterval(int migrationInterval) {
+		if (migrationInterval < 1) {
+			throw new IllegalArgumentException("migration interval must be at least 1");
+		}
+		this.migrationInterval = migrationInterval;
+	}
+
+	/*Number of paths each island sends to the next one at an exchange*/
+	public int getMigrants() {
+		return migrants;
+	}
+
+	public void setMigrants(int migrants) {
+		if (migrants < 0) {
+			throw new IllegalArgumentException("migrants cannot be negative");
+		}
+		this.migrants = migrants;
+	}
+
+	/*A copy with the same settings*/
+	GeneticConfig copy() {
+		GeneticConfig copy = new GeneticConfig();
+		copy.generations = generations;
+		copy.populationSize = populationSize;
+		copy.eliteFraction = eliteFraction;
+		copy.mutationRate = mutationRate;
+		copy.immigrantFraction = immigrantFraction;
+		copy.tournamentSize = tournamentSize;
+		copy.eventInterval = eventInterval;
+		copy.seed = seed;
+		copy.islands = islands;
+		copy.migrationInterval = migrationInterval;
+		copy.migrants = migrants;
+		return copy;
+	}
+
+	private static double fraction(double value, String name) {
+		if (!(value >= 0 && value <= 1)) {
+			throw new IllegalArgumentException(name + " must be between 0 and 1");
+		}
+		return value;
+	}
+}
@@ -0,0 +1,318 @@
+package MapApp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/*Runs the genetic algorithm on a Population kept in an array.
+ *
+ * Every generation the shortest paths are moved to the front of the
+ * array by partial selection (quickselect) and kept as the elite.
+ * The other places are filled with children of tournament-selected
+ * parents and with new random walks, some of which are mutated.
+ * Nothing is drained or re-heaped; apart from the selection, each
+ * step touches only the places being replaced.
+ *
+ * The engine listens for edge weight changes while it is open, its
+ * own random events included, and rescores the Chromosomes that use
+ * the changed edge at the start of the next generation. run() closes
+ * the engine when it finishes.
+ */
+public class GeneticEngine implements EdgeWeightListener {
+	private final MapGraph graph;
+	private final CompactGraph compact;
+	private final Vertex start;
+	private final Vertex end;
+	private final GeneticConfig config;
+	/*Drives selection, crossover, the choice of mutants and random
+	 * events, and is split into one generator per Chromosome for the
+	 * parallel steps
+	 */
+	private final SplittableRandom random;
+	private final int populationSize;
+	private final int eliteCount;
+	private final Population population;
+	private final ConcurrentLinkedQueue<double[]> changes = new ConcurrentLinkedQueue<double[]>();
+	private final List<GenerationStats> stats = new ArrayList<GenerationStats>();
+	private int generation;
+
+	public GeneticEngine(MapGraph graph, Vertex start, Vertex end, GeneticConfig config) {
+		this.graph = graph;
+		this.compact = graph.getCompactGraph();
+		this.start = start;
+		this.end = end;
+		this.config = config;
+		Long seed = config.getSeed();
+		random = seed == null ? new SplittableRandom() : new SplittableRandom(seed);
+		populationSize = config.populationSizeFor(compact.getVertexCount());
+		eliteCount = Math.max(1, Math.min(populationSize, (int) (config.getEliteFraction() * populationSize)));
+		population = new Population(compact, populationSize);
+		for (Chromosome c: randomChromosomes(populationSize)) {
+			population.add(c);
+		}
+		graph.addEdgeWeightListener(this);
+	}
+
+	/*Evolves the population for the configured number of
+	 * generations and returns the shortest path found, in the same
+	 * Stack format as PathAlgorithms.AStar
+	 */
+	public Stack<Vertex> run() {
+		return run(null);
+	}
+
+	/*Same as run(), calling onGeneration (if not null) after every
+	 * generation. Stops with a CancellationException if the calling
+	 * thread is interrupted; the check is made between generations.
+	 */
+	public Stack<Vertex> run(Consumer<GenerationStats> onGeneration) {
+		try {
+			for (int i = 0; i < config.getGenerations(); i++) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new CancellationException("interrupted after " + i + " generations");
+				}
+				step();
+				if (onGeneration != null) {
+					onGeneration.accept(stats.get(stats.size() - 1));
+				}
+			}
+			applyChanges();
+			return getBestPath();
+		}
+		finally {
+			close();
+		}
+	}
+
+	/*Stops listening for weight changes*/
+	public void close() {
+		graph.removeEdgeWeightListener(this);
+	}
+
+	@Override
+	public void edgeWeightChanged(int edge, double oldWeight, double newWeight) {
+		changes.add(new double[] {edge, newWeight - oldWeight});
+	}
+
+	/*Runs one generation*/
+	public void step() {
+		long begin = System.nanoTime();
+		int interval = config.getEventInterval();
+		if (interval > 0 && generation > 0 && generation % interval == 0) {
+			graph.randomEvent(random);
+		}
+		applyChanges();
+		population.selectBest(eliteCount);
+		int open = populationSize - eliteCount;
+		int immigrants = (int) Math.round(config.getImmigrantFraction() * open);
+		int children = open - immigrants;
+		Chromosome[] next = new Chromosome[open];
+		int crossovers = 0;
+		int successes = 0;
+		for (int i = 0; i < children; i += 2) {
+			Chromosome mother = tournament();
+			Chromosome father = tournament();
+			Chromosome[] kids = Chromosome.crossover(mother, father, random);
+			crossovers++;
+			if (kids != null) {
+				successes++;
+			}
+			next[i] = kids != null ? kids[0] : mother.copy();
+			if (i + 1 < children) {
+				next[i + 1] = kids != null ? kids[1] : father.copy();
+			}
+		}
+		long crossed = System.nanoTime();
+		System.arraycopy(randomChromosomes(immigrants), 0, next, children, immigrants);
+		long walked = System.nanoTime();
+		mutate(next);
+		for (int i = 0; i < open; i++) {
+			population.set(eliteCount + i, next[i]);
+		}
+		long mutated = System.nanoTime();
+		double total = 0;
+		for (int i = 0; i < populationSize; i++) {
+			total += population.get(i).getDistance();
+		}
+		GenerationStats done = new GenerationStats(generation, mutated - begin, crossed - begin, walked - crossed,
+				mutated - walked, population.get(population.best()).getDistance(), total / populationSize);
+		stats.add(done);
+		RoutingMetrics.get().generation(done, crossovers, successes);
+		generation++;
+	}
+
+	/*Copies of the count shortest paths, for sending to another
+	 * population
+	 */
+	public Chromosome[] emigrants(int count) {
+		applyChanges();
+		count = Math.min(count, populationSize);
+		population.selectBest(count);
+		Chromosome[] copies = new Chromosome[count];
+		for (int i = 0; i < count; i++) {
+			copies[i] = population.get(i).copy();
+		}
+		return copies;
+	}
+
+	/*Puts the given paths in place of the longest ones. They must
+	 * be scored against the current weights of the graph.
+	 */
+	public void immigrate(Chromosome[] arrivals) {
+		applyChanges();
+		int count = Math.min(arrivals.length, populationSize);
+		population.selectBest(populationSize - count);
+		for (int i = 0; i < count; i++) {
+			population.set(populationSize - count + i, arrivals[i]);
+		}
+	}
+
+	/*Rescores the population for the weight changes seen since the
+	 * last call
+	 */
+	private void applyChanges() {
+		double[] change;
+		while ((change = changes.poll()) != null) {
+			population.rescore((int) change[0], change[1]);
+		}
+	}
+
+	/*The shortest of tournamentSize randomly drawn members*/
+	private Chromosome tournament() {
+		Chromosome best = population.get(random.nextInt(populationSize));
+		for (int i = 1; i < config.getTournamentSize(); i++) {
+			Chromosome c = population.get(random.nextInt(populationSize));
+			if (c.getDistance() < best.getDistance()) {
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	/*Mutates each new member with the configured probability. The
+	 * members are picked in order and the mutations run in parallel,
+	 * each with its own split generator.
+	 */
+	private void mutate(Chromosome[] next) {
+		int[] picked = new int[next.length];
+		int count = 0;
+		for (int i = 0; i < next.length; i++) {
+			if (random.nextDouble() < config.getMutationRate()) {
+				picked[count++] = i;
+			}
+		}
+		SplittableRandom[] streams = new SplittableRandom[count];
+		for (int j = 0; j < count; j++) {
+			streams[j] = random.split();
+		}
+		IntStream.range(0, count).parallel().forEach(j -> {
+			Chromosome c = next[picked[j]];
+			double change = c.mutate(graph, streams[j]);
+			if (change != 0) {
+				c.updateDistance(change);
+			}
+		});
+	}
+
+	/*Builds random-walk Chromosomes in parallel. Each one gets its
+	 * own generator, split off in order from the seeded one, so the
+	 * result does not depend on which thread built which Chromosome.
+	 */
+	private Chromosome[] randomChromosomes(int count) {
+		SplittableRandom[] streams = new SplittableRandom[count];
+		for (int i = 0; i < count; i++) {
+			streams[i] = random.split();
+		}
+		Chromosome[] individuals = new Chromosome[count];
+		IntStream.range(0, count).parallel().forEach(i -> individuals[i] = new Chromosome(start, end, graph, streams[i]));
+		return individuals;
+	}
+
+	public Chromosome getBest() {
+		return population.get(population.best());
+	}
+
+	public Stack<Vertex> getBestPath() {
+		Chromosome best = getBest();
+		Stack<Vertex> path = new Stack<Vertex>();
+		for (int i = best.getLength() - 1; i >= 0; i--) {
+			path.push(compact.getVertex(best.getGene(i)));
+		}
+		return path;
+	}
+
+	public int getPopulationSize() {
+		return populationSize;
+	}
+
+	/*Timing and fitness of every generation run so far*/
+	public List<GenerationStats> getStats() {
+		return Collections.unmodifiableList(stats);
+	}
+
+	/*What one generation cost and produced. The phase times are the
+	 * crossover of tournament-selected parents (including the elite
+	 * selection), the new random walks, and the mutations.
+	 */
+	public static class GenerationStats {
+		private final int generation;
+		private final long nanos;
+		private final long crossoverNanos;
+		private final long walkNanos;
+		private final long mutationNanos;
+		private final double bestDistance;
+		private final double meanDistance;
+
+		GenerationStats(int generation, long nanos, long crossoverNanos, long walkNanos, long mutationNanos,
+				double bestDistance, double meanDistance) {
+			this.generation = generation;
+			this.nanos = nanos;
+			this.crossoverNanos = crossoverNanos;
+			this.walkNanos = walkNanos;
+			this.mutationNanos = mutationNanos;
+			this.bestDistance = bestDistance;
+			this.meanDistance = meanDistance;
+		}
+
+		public int getGeneration() {
+			return generation;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public long getCrossoverNanos() {
+			return crossoverNanos;
+		}
+
+		public long getWalkNanos() {
+			return walkNanos;
+		}
+
+		public long getMutationNanos() {
+			return mutationNanos;
+		}
+
+		public double getBestDistance() {
+			return bestDistance;
+		}
+
+		public double getMeanDistance() {
+			return meanDistance;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("generation %d: %.3f ms (crossover %.3f, walks %.3f, mutation %.3f), best %.2f, mean %.2f",
+					generation, nanos / 1e6, crossoverNanos / 1e6, walkNanos / 1e6, mutationNanos / 1e6,
+					bestDistance, meanDistance);
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package MapApp;
+
+/*An estimate of the remaining distance used to order the AStar
+ * open set. To keep AStar exact the estimate must never be larger
+ * than the true shortest distance (admissible).
+ */
+public interface Heuristic {
+	/*Called once before each search, so that a heuristic built from
+	 * precomputed data can bring it up to date with the edge weights
+	 */
+	default void prepare() {
+	}
+
+	double estimate(int vertex, int goal);
+}
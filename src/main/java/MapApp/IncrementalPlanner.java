@@ -0,0 +1,204 @@
+package MapApp;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Stack;
+import java.util.concurrent.CancellationException;
+
+/*Keeps the shortest path between two fixed vertices up to date
+ * while edge weights change, using Lifelong Planning A* (LPA*).
+ *
+ * The planner keeps g, the distance found by the last search, and
+ * rhs, the one-step lookahead min over neighbors u of g(u) + w(u, v),
+ * for every vertex between queries. A weight change only makes the
+ * two endpoints of the edge inconsistent (g != rhs); the next call
+ * to route() re-expands the vertices whose distance actually changed,
+ * instead of searching the whole map again as AStar does. Each
+ * vertex also keeps the neighbor its rhs came from, which the route
+ * is read back along.
+ *
+ * The queue is ordered by [min(g, rhs) + h, min(g, rhs)]. h is the
+ * straight-line distance scaled by the smallest weight/length ratio
+ * of any edge, which keeps it consistent when random events make an
+ * edge shorter than the straight line. When that ratio drops, every
+ * queued key is recomputed; g and rhs do not depend on h.
+ */
+public class IncrementalPlanner implements EdgeWeightListener {
+	private static final double INFINITY = Double.POSITIVE_INFINITY;
+	private final MapGraph graph;
+	private final CompactGraph compact;
+	private final int start;
+	private final int goal;
+	private final double[] g;
+	private final double[] rhs;
+	/*The neighbor rhs was last taken from, or -1*/
+	private final int[] parent;
+	private final IndexedHeap queue;
+	private double scale;
+	private boolean rescaled;
+	private int expanded;
+
+	public IncrementalPlanner(MapGraph graph, Vertex start, Vertex end) {
+		this.graph = graph;
+		this.compact = graph.getCompactGraph();
+		this.start = start.getId();
+		this.goal = end.getId();
+		int n = compact.getVertexCount();
+		g = new double[n];
+		rhs = new double[n];
+		Arrays.fill(g, INFINITY);
+		Arrays.fill(rhs, INFINITY);
+		parent = new int[n];
+		Arrays.fill(parent, -1);
+		queue = new IndexedHeap(n);
+		scale = 1;
+		for (int e = 0; e < compact.getEdgeCount(); e++) {
+			scale = Math.min(scale, ratio(e, compact.getEdgeWeight(e)));
+		}
+		rhs[this.start] = 0;
+		enqueue(this.start);
+		graph.addEdgeWeightListener(this);
+	}
+
+	/*Stops following weight changes; the planner cannot be used after this*/
+	public void close() {
+		graph.removeEdgeWeightListener(this);
+	}
+
+	/*Weight over straight-line length, or 1 for edges of no length*/
+	private double ratio(int edge, double weight) {
+		double length = compact.euclidean(compact.edgeSource.get(edge), compact.edgeTarget.get(edge));
+		return length > 0 ? weight / length : 1;
+	}
+
+	@Override
+	public synchronized void edgeWeightChanged(int edge, double oldWeight, double newWeight) {
+		double ratio = ratio(edge, newWeight);
+		if (ratio < scale) {
+			scale = Math.max(0, ratio);
+			rescaled = true;
+		}
+		updateVertex(compact.edgeSource.get(edge));
+		updateVertex(compact.edgeTarget.get(edge));
+	}
+
+	/*Repairs the search tree after the weight changes made since
+	 * the last call and returns the path in the same format as
+	 * PathAlgorithms.AStar: the start on top of the Stack, or only
+	 * the end if it cannot be reached. Stops with a
+	 * CancellationException if the calling thread is interrupted; the
+	 * next call carries on from where this one stopped.
+	 */
+	public synchronized Stack<Vertex> route() {
+		if (rescaled) {
+			rescaled = false;
+			for (int v = 0; v < g.length; v++) {
+				if (queue.contains(v)) {
+					enqueue(v);
+				}
+			}
+		}
+		expanded = 0;
+		computeShortestPath();
+		Stack<Vertex> path = new Stack<Vertex>();
+		path.push(compact.getVertex(goal));
+		if (g[goal] == INFINITY) {
+			return path;
+		}
+		/*Walks back along the parents. With zero-weight edges,
+		 * neighbors can have the same g, and the parents are what
+		 * tells them apart; if they still do not lead to the start,
+		 * the route is reported as missing rather than cut short.
+		 */
+		int current = goal;
+		for (int steps = 0; current != start; steps++) {
+			current = parent[current];
+			if (current < 0 || steps == g.length) {
+				path.clear();
+				path.push(compact.getVertex(goal));
+				return path;
+			}
+			path.push(compact.getVertex(current));
+		}
+		return path;
+	}
+
+	/*Length of the current route, or infinity if there is none*/
+	public synchronized double getDistance() {
+		return g[goal];
+	}
+
+	/*Vertices expanded by the last call to route()*/
+	public synchronized int getExpandedCount() {
+		return expanded;
+	}
+
+	private void computeShortestPath() {
+		IntBuffer offsets = compact.offsets;
+		IntBuffer targets = compact.targets;
+		double[] weights = compact.weights;
+		while (!queue.isEmpty() && (isBefore(queue.peek(), goal) || rhs[goal] != g[goal])) {
+			if (expanded % 4096 == 0 && Thread.currentThread().isInterrupted()) {
+				throw new CancellationException("interrupted after " + expanded + " expanded vertices");
+			}
+			int u = queue.pop();
+			expanded++;
+			if (g[u] > rhs[u]) {
+				g[u] = rhs[u];
+				for (int i = offsets.get(u); i < offsets.get(u + 1); i++) {
+					int s = targets.get(i);
+					if (s != start && g[u] + weights[i] < rhs[s]) {
+						rhs[s] = g[u] + weights[i];
+						parent[s] = u;
+						enqueue(s);
+					}
+				}
+			}
+			else {
+				g[u] = INFINITY;
+				updateVertex(u);
+				for (int i = offsets.get(u); i < offsets.get(u + 1); i++) {
+					updateVertex(targets.get(i));
+				}
+			}
+		}
+	}
+
+	/*Recomputes rhs and the parent from the neighbors and queues v
+	 * if it is inconsistent
+	 */
+	private void updateVertex(int v) {
+		if (v != start) {
+			double best = INFINITY;
+			int from = -1;
+			for (int i = compact.offsets.get(v); i < compact.offsets.get(v + 1); i++) {
+				double distance = g[compact.targets.get(i)] + compact.weights[i];
+				if (distance < best) {
+					best = distance;
+					from = compact.targets.get(i);
+				}
+			}
+			rhs[v] = best;
+			parent[v] = from;
+		}
+		enqueue(v);
+	}
+
+	private void enqueue(int v) {
+		if (g[v] == rhs[v]) {
+			queue.remove(v);
+		}
+		else {
+			double k2 = Math.min(g[v], rhs[v]);
+			queue.update(v, k2 + scale * compact.euclidean(v, goal), k2);
+		}
+	}
+
+	/*Whether the queued vertex u sorts before the key of v*/
+	private boolean isBefore(int u, int v) {
+		double k2 = Math.min(g[v], rhs[v]);
+		double k1 = k2 + scale * compact.euclidean(v, goal);
+		double key = queue.getKey(u);
+		return key < k1 || (key == k1 && queue.getTie(u) < k2);
+	}
+}
@@ -0,0 +1,204 @@
+package MapApp;
+
+import java.util.Arrays;
+
+/*A 4-ary min-heap of vertex ids ordered by a double key. The
+ * position of every id in the heap is kept in an array indexed by
+ * id, so an id is never queued twice and its key can be lowered in
+ * place (decrease-key) instead of pushing a duplicate entry.
+ *
+ * Equal keys are ordered by a second key, the tie, which is 0
+ * unless it is given to update(). Searches that repair an existing
+ * tree (IncrementalPlanner) also need to raise keys and to remove
+ * ids, which update() and remove() do.
+ */
+public final class IndexedHeap {
+	private static final int ARITY = 4;
+	private final int[] heap;
+	private final double[] keys;
+	private final double[] ties;
+	private final int[] position;
+	private int size;
+	private long pushes;
+	private long decreases;
+
+	public IndexedHeap(int capacity) {
+		heap = new int[capacity];
+		keys = new double[capacity];
+		ties = new double[capacity];
+		position = new int[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean contains(int id) {
+		return position[id] >= 0;
+	}
+
+	public double getKey(int id) {
+		return keys[id];
+	}
+
+	/*Removes every id; O(size) rather than O(capacity)*/
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+		pushes = 0;
+		decreases = 0;
+	}
+
+	/*Inserts the id, or lowers its key if it is already queued
+	 * with a larger one. Returns false if nothing changed.
+	 */
+	public boolean push(int id, double key) {
+		int index = position[id];
+		if (index < 0) {
+			index = size++;
+			heap[index] = id;
+			position[id] = index;
+			keys[id] = key;
+			ties[id] = 0;
+			pushes++;
+			siftUp(index);
+			return true;
+		}
+		if (key < keys[id]) {
+			keys[id] = key;
+			ties[id] = 0;
+			decreases++;
+			siftUp(index);
+			return true;
+		}
+		return false;
+	}
+
+	/*Queues the id with the given key and tie, moving it up or
+	 * down if it was already queued
+	 */
+	public void update(int id, double key, double tie) {
+		int index = position[id];
+		if (index < 0) {
+			index = size++;
+			heap[index] = id;
+			position[id] = index;
+			pushes++;
+		}
+		else {
+			decreases++;
+		}
+		keys[id] = key;
+		ties[id] = tie;
+		siftUp(index);
+		siftDown(position[id]);
+	}
+
+	/*Takes the id out of the heap if it is queued*/
+	public void remove(int id) {
+		int index = position[id];
+		if (index < 0) {
+			return;
+		}
+		position[id] = -1;
+		size--;
+		if (index < size) {
+			int last = heap[size];
+			heap[index] = last;
+			position[last] = index;
+			siftUp(index);
+			siftDown(position[last]);
+		}
+	}
+
+	public double getTie(int id) {
+		return ties[id];
+	}
+
+	public int peek() {
+		return heap[0];
+	}
+
+	public double peekKey() {
+		return keys[heap[0]];
+	}
+
+	/*Removes and returns the id with the smallest key*/
+	public int pop() {
+		int top = heap[0];
+		position[top] = -1;
+		size--;
+		if (size > 0) {
+			int last = heap[size];
+			heap[0] = last;
+			position[last] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	/*Number of inserts and decrease-keys since the last clear*/
+	public long getPushes() {
+		return pushes;
+	}
+
+	/*Includes the keys moved by update()*/
+	public long getDecreases() {
+		return decreases;
+	}
+
+	private void siftUp(int index) {
+		int id = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) / ARITY;
+			int parentId = heap[parent];
+			if (!less(id, parentId)) {
+				break;
+			}
+			heap[index] = parentId;
+			position[parentId] = index;
+			index = parent;
+		}
+		heap[index] = id;
+		position[id] = index;
+	}
+
+	private void siftDown(int index) {
+		int id = heap[index];
+		while (true) {
+			int first = ARITY * index + 1;
+			if (first >= size) {
+				break;
+			}
+			int last = Math.min(first + ARITY, size);
+			int best = first;
+			for (int child = first + 1; child < last; child++) {
+				if (less(heap[child], heap[best])) {
+					best = child;
+				}
+			}
+			int bestId = heap[best];
+			if (!less(bestId, id)) {
+				break;
+			}
+			heap[index] = bestId;
+			position[bestId] = index;
+			index = best;
+		}
+		heap[index] = id;
+		position[id] = index;
+	}
+
+	private boolean less(int a, int b) {
+		double keyA = keys[a];
+		double keyB = keys[b];
+		return keyA < keyB || (keyA == keyB && ties[a] < ties[b]);
+	}
+}
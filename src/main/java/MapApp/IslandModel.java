@@ -0,0 +1,194 @@
+package MapApp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+/*Runs the genetic algorithm as several independent populations
+ * (islands), each on its own thread, that send copies of their best
+ * paths to the next island in a ring every migrationInterval
+ * generations. Separate islands converge on different paths, and
+ * migration spreads the good ones without letting one path take
+ * over everywhere.
+ *
+ * The islands run freely between exchanges and stop together at
+ * each one. Migration and random events happen only there, while no
+ * island is running, so every island sees the same weight change
+ * before the same generation, as the listener of the graph queues it
+ * for all of them.
+ */
+public class IslandModel {
+	private final MapGraph graph;
+	private final GeneticConfig config;
+	/*Seeds the islands and picks the random events*/
+	private final SplittableRandom random;
+	private final GeneticEngine[] islands;
+
+	public IslandModel(MapGraph graph, Vertex start, Vertex end, GeneticConfig config) {
+		this.graph = graph;
+		this.config = config;
+		Long seed = config.getSeed();
+		random = seed == null ? new SplittableRandom() : new SplittableRandom(seed);
+		islands = new GeneticEngine[config.islandsFor(Runtime.getRuntime().availableProcessors())];
+		try {
+			for (int i = 0; i < islands.length; i++) {
+				GeneticConfig island = config.copy();
+				island.setEventInterval(0);
+				island.setSeed(random.nextLong());
+				islands[i] = new GeneticEngine(graph, start, end, island);
+			}
+		}
+		catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/*Evolves all islands for the configured number of generations
+	 * and returns the shortest path found on any of them, in the same
+	 * Stack format as PathAlgorithms.AStar
+	 */
+	public Stack<Vertex> run() {
+		return run(null);
+	}
+
+	/*Same as run(), calling onExchange (if not null) with the island
+	 * holding the shortest path every time the islands stop together.
+	 * Stops with a CancellationException if the calling thread is
+	 * interrupted; the check is made at each stop.
+	 */
+	public Stack<Vertex> run(Consumer<GeneticEngine> onExchange) {
+		ExecutorService executor = Executors.newFixedThreadPool(islands.length, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "island");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			int generations = config.getGenerations();
+			int interval = config.getEventInterval();
+			int generation = 0;
+			while (generation < generations) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new CancellationException("interrupted after " + generation + " generations");
+				}
+				if (interval > 0 && generation > 0 && generation % interval == 0) {
+					randomEvent();
+				}
+				int next = Math.min(generations, (generation / config.getMigrationInterval() + 1) * config.getMigrationInterval());
+				if (interval > 0) {
+					next = Math.min(next, (generation / interval + 1) * interval);
+				}
+				evolve(executor, next - generation);
+				generation = next;
+				if (onExchange != null) {
+					onExchange.accept(getBest());
+				}
+				if (generation % config.getMigrationInterval() == 0 && generation < generations) {
+					migrate();
+				}
+			}
+			return getBest().getBestPath();
+		}
+		finally {
+			executor.shutdownNow();
+			close();
+		}
+	}
+
+	/*Runs every island for the given number of generations and waits
+	 * for all of them
+	 */
+	private void evolve(ExecutorService executor, final int steps) {
+		List<Future<Void>> running = new ArrayList<Future<Void>>(islands.length);
+		for (final GeneticEngine island: islands) {
+			running.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() {
+					for (int i = 0; i < steps; i++) {
+						island.step();
+					}
+					return null;
+				}
+			}));
+		}
+		try {
+			for (Future<Void> future: running) {
+				future.get();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("interrupted while the islands were evolving");
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/*Sends copies of the best paths of each island to the next one.
+	 * All emigrants are taken before any arrive, so a path moves only
+	 * one island per exchange.
+	 */
+	private void migrate() {
+		if (islands.length < 2 || config.getMigrants() == 0) {
+			return;
+		}
+		Chromosome[][] emigrants = new Chromosome[islands.length][];
+		for (int i = 0; i < islands.length; i++) {
+			emigrants[i] = islands[i].emigrants(config.getMigrants());
+		}
+		for (int i = 0; i < islands.length; i++) {
+			islands[(i + 1) % islands.length].immigrate(emigrants[i]);
+		}
+	}
+
+	/*Sets the weight of a random edge to a random number below 100;
+	 * every island rescores for it before its next generation
+	 */
+	private void randomEvent() {
+		graph.randomEvent(random);
+	}
+
+	/*The island holding the shortest path*/
+	public GeneticEngine getBest() {
+		GeneticEngine best = islands[0];
+		for (GeneticEngine island: islands) {
+			if (island.getBest().getDistance() < best.getBest().getDistance()) {
+				best = island;
+			}
+		}
+		return best;
+	}
+
+	public int getIslandCount() {
+		return islands.length;
+	}
+
+	public GeneticEngine getIsland(int i) {
+		return islands[i];
+	}
+
+	/*Stops all islands listening for weight changes*/
+	public void close() {
+		for (GeneticEngine island: islands) {
+			if (island != null) {
+				island.close();
+			}
+		}
+	}
+}
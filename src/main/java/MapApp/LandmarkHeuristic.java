@@ -0,0 +1,150 @@
+package MapApp;
+
+import java.util.stream.IntStream;
+
+/*The ALT heuristic (A*, Landmarks, Triangle inequality). The shortest
+ * distance from a few landmark vertices to every vertex is precomputed;
+ * by the triangle inequality |d(L, goal) - d(L, v)| is then a lower
+ * bound on d(v, goal) for every landmark L, whatever the edge weights
+ * look like geometrically.
+ *
+ * Landmarks are picked far apart on the map (each one is the vertex
+ * furthest in a straight line from those already picked), and their
+ * distance tables are computed in parallel.
+ *
+ * The bound stays admissible while every edge weight is at least the
+ * weight the tables were computed with, so weight increases are
+ * ignored. A weight decrease marks the tables stale, and the next
+ * search recomputes them in prepare(). close() stops following the
+ * weights once the heuristic is no longer used.
+ */
+public class LandmarkHeuristic implements Heuristic, EdgeWeightListener {
+	private final MapGraph graph;
+	private final CompactGraph compact;
+	private final int[] landmarks;
+	/*Weights the tables were computed with, indexed by edge id*/
+	private final double[] computedWeights;
+	/*distances[v * landmarks.length + k] is the distance from landmark k to v*/
+	private volatile double[] distances;
+	private volatile boolean stale;
+
+	public LandmarkHeuristic(MapGraph graph, int count) {
+		this.graph = graph;
+		compact = graph.getCompactGraph();
+		landmarks = chooseLandmarks(compact, Math.min(count, compact.getVertexCount()));
+		computedWeights = new double[compact.getEdgeCount()];
+		recompute();
+		graph.addEdgeWeightListener(this);
+	}
+
+	/*Stops following weight changes; the tables are kept as they are*/
+	public void close() {
+		graph.removeEdgeWeightListener(this);
+	}
+
+	public int[] getLandmarks() {
+		return landmarks.clone();
+	}
+
+	/*Farthest-point selection on the vertex coordinates*/
+	private static int[] chooseLandmarks(CompactGraph compact, int count) {
+		int n = compact.getVertexCount();
+		int[] chosen = new int[count];
+		if (count == 0) {
+			return chosen;
+		}
+		double centerX = 0;
+		double centerY = 0;
+		for (int v = 0; v < n; v++) {
+			centerX += compact.x.get(v) / n;
+			centerY += compact.y.get(v) / n;
+		}
+		double[] nearest = new double[n];
+		int first = 0;
+		for (int v = 0; v < n; v++) {
+			nearest[v] = Math.hypot(compact.x.get(v) - centerX, compact.y.get(v) - centerY);
+			if (nearest[v] > nearest[first]) {
+				first = v;
+			}
+		}
+		chosen[0] = first;
+		for (int k = 1; k < count; k++) {
+			int last = chosen[k - 1];
+			int next = 0;
+			for (int v = 0; v < n; v++) {
+				double d = compact.euclidean(v, last);
+				if (k == 1 || d < nearest[v]) {
+					nearest[v] = d;
+				}
+				if (nearest[v] > nearest[next]) {
+					next = v;
+				}
+			}
+			chosen[k] = next;
+		}
+		return chosen;
+	}
+
+	/*Runs one Dijkstra per landmark, in parallel. A weight changed
+	 * while this runs may be missing from the tables, so they stay stale
+	 */
+	private synchronized void recompute() {
+		final int count = landmarks.length;
+		final double[] table = new double[compact.getVertexCount() * count];
+		int version = compact.getWeightVersion();
+		System.arraycopy(compact.edgeWeight, 0, computedWeights, 0, computedWeights.length);
+		IntStream.range(0, count).parallel().forEach(k -> {
+			SearchWorkspace workspace = compact.acquireWorkspace();
+			try {
+				PathAlgorithms.shortestPathTree(compact, workspace, landmarks[k]);
+				for (int v = 0; v < compact.getVertexCount(); v++) {
+					table[v * count + k] = workspace.getDistance(v);
+				}
+			}
+			finally {
+				compact.releaseWorkspace(workspace);
+			}
+		});
+		distances = table;
+		stale = compact.getWeightVersion() != version;
+	}
+
+	@Override
+	public void edgeWeightChanged(int edge, double oldWeight, double newWeight) {
+		if (newWeight < computedWeights[edge]) {
+			stale = true;
+		}
+	}
+
+	@Override
+	public void prepare() {
+		if (stale) {
+			synchronized (this) {
+				if (stale) {
+					recompute();
+				}
+			}
+		}
+	}
+
+	/*Vertices that cannot reach a landmark (Double.MAX_VALUE) give no bound*/
+	@Override
+	public double estimate(int vertex, int goal) {
+		double[] table = distances;
+		int count = landmarks.length;
+		int v = vertex * count;
+		int g = goal * count;
+		double best = 0;
+		for (int k = 0; k < count; k++) {
+			double toVertex = table[v + k];
+			double toGoal = table[g + k];
+			if (toVertex != Double.MAX_VALUE && toGoal != Double.MAX_VALUE) {
+				double bound = Math.abs(toGoal - toVertex);
+				if (bound > best) {
+					best = bound;
+				}
+			}
+		}
+		return best;
+	}
+}
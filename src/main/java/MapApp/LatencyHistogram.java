@@ -0,0 +1,98 @@
+package MapApp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*Counts durations in nanoseconds in buckets of logarithmic width,
+ * so that percentiles can be read off without keeping every value.
+ *
+ * Each power of two is split into 16 buckets, which bounds the error
+ * of a percentile by 1/16 of the value. Values below 16 ns get a
+ * bucket each. Recording increments one bucket and two LongAdders,
+ * which do not make concurrent threads contend for one counter, so any
+ * number of threads can record at once.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BITS = 4;
+	private static final int SUB = 1 << SUB_BITS;
+	private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * SUB);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(index(nanos));
+		count.increment();
+		total.add(nanos);
+		long seen = max.get();
+		while (nanos > seen && !max.compareAndSet(seen, nanos)) {
+			seen = max.get();
+		}
+	}
+
+	private static int index(long value) {
+		if (value < SUB) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB - 1);
+		return (exponent - SUB_BITS + 1) * SUB + sub;
+	}
+
+	/*The largest value that falls in the bucket*/
+	private static long upperBound(int index) {
+		if (index < SUB) {
+			return index;
+		}
+		int exponent = index / SUB + SUB_BITS - 1;
+		long sub = index % SUB;
+		long low = (SUB + sub) << (exponent - SUB_BITS);
+		return low + (1L << (exponent - SUB_BITS)) - 1;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) total.sum() / n;
+	}
+
+	/*The value that the given share of the recorded values (0 to 1)
+	 * does not exceed, to within 1/16; 0 if nothing was recorded
+	 */
+	public long getPercentile(double fraction) {
+		long n = count.sum();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(fraction * n));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/*Count, mean, median, 90th, 99th and 99.9th percentile and
+	 * maximum, in milliseconds
+	 */
+	@Override
+	public String toString() {
+		return String.format("%d samples, mean %.3f ms, p50 %.3f ms, p90 %.3f ms, p99 %.3f ms, p99.9 %.3f ms, max %.3f ms",
+				getCount(), getMean() / 1e6, getPercentile(0.5) / 1e6, getPercentile(0.9) / 1e6,
+				getPercentile(0.99) / 1e6, getPercentile(0.999) / 1e6, getMax() / 1e6);
+	}
+}
@@ -0,0 +1,295 @@
+package MapApp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Stack;
+import java.util.function.Consumer;
+
+import javafx.event.EventHandler;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.paint.Color;
+
+/*Draws the map image, its sites and edges and the routes found on a
+ * single Canvas, instead of one scene graph node per site and per
+ * route segment.
+ *
+ * Only what lies in the visible part of the map is drawn: the sites
+ * are looked up in the map's SpatialIndex, and the edges are found
+ * through the sites within one longest edge of the view. Each kind of
+ * shape is drawn as one batch (a single path for all edges, one fill
+ * colour for all sites). When the view holds too many sites to tell
+ * apart, detail is reduced: edges are left out, and sites are drawn
+ * as small squares, at most one per few-pixel cell of the screen.
+ *
+ * Scrolling zooms around the mouse and dragging pans. A click that is
+ * not a drag is hit-tested through the SpatialIndex and reported to
+ * the site handler if it lands on a site.
+ */
+public class MapCanvas extends Canvas {
+	private static final double SITE_RADIUS = 4;
+	/*More visible sites than this are drawn as decimated squares*/
+	private static final int FULL_DETAIL_SITES = 5000;
+	/*More visible sites than this and the edges are left out*/
+	private static final int EDGE_DETAIL_SITES = 20000;
+	/*Screen cell, in pixels, that holds at most one decimated site*/
+	private static final int CELL = 3;
+	private final MapGraph map;
+	private final CompactGraph compact;
+	private final Image image;
+	private final double longestEdge;
+	private final boolean[] highlighted;
+	private final List<int[]> routes = new ArrayList<int[]>();
+	/*The best path so far of a search still running, or null*/
+	private int[] pending;
+	/*Stamped marks of the sites in view, and of the occupied screen
+	 * cells when decimating
+	 */
+	private final int[] visible;
+	private int[] cells = new int[0];
+	private int stamp;
+	/*screen = world * scale + offset*/
+	private double scale = 1;
+	private double offsetX;
+	private double offsetY;
+	private double dragX;
+	private double dragY;
+	private Consumer<Vertex> siteHandler;
+
+	public MapCanvas(MapGraph map, Image image) {
+		super(image.getWidth(), image.getHeight());
+		this.map = map;
+		this.compact = map.getCompactGraph();
+		this.image = image;
+		highlighted = new boolean[compact.getVertexCount()];
+		visible = new int[compact.getVertexCount()];
+		double longest = 0;
+		for (int e = 0; e < compact.getEdgeCount(); e++) {
+			longest = Math.max(longest, compact.euclidean(compact.getEdgeSource(e), compact.getEdgeTarget(e)));
+		}
+		longestEdge = longest;
+		setOnScroll(new EventHandler<ScrollEvent>() {
+			@Override
+			public void handle(ScrollEvent e) {
+				zoom(Math.pow(1.1, e.getDeltaY() / 40), e.getX(), e.getY());
+			}
+		});
+		setOnMousePressed(new EventHandler<MouseEvent>() {
+			@Override
+			public void handle(MouseEvent e) {
+				dragX = e.getX();
+				dragY = e.getY();
+			}
+		});
+		setOnMouseDragged(new EventHandler<MouseEvent>() {
+			@Override
+			public void handle(MouseEvent e) {
+				offsetX += e.getX() - dragX;
+				offsetY += e.getY() - dragY;
+				dragX = e.getX();
+				dragY = e.getY();
+				redraw();
+			}
+		});
+		setOnMouseClicked(new EventHandler<MouseEvent>() {
+			@Override
+			public void handle(MouseEvent e) {
+				if (e.isStillSincePress() && siteHandler != null) {
+					Vertex v = siteAt(e.getX(), e.getY());
+					if (v != null) {
+						siteHandler.accept(v);
+					}
+				}
+			}
+		});
+		redraw();
+	}
+
+	/*Called with the site under a click*/
+	public void setOnSiteClicked(Consumer<Vertex> handler) {
+		this.siteHandler = handler;
+	}
+
+	/*The site drawn under the screen point, or null*/
+	public Vertex siteAt(double screenX, double screenY) {
+		double x = (screenX - offsetX) / scale;
+		double y = (screenY - offsetY) / scale;
+		Vertex v = map.nearestVertex(x, y);
+		if (v == null || Math.hypot(v.getX() - x, v.getY() - y) * scale > SITE_RADIUS) {
+			return null;
+		}
+		return v;
+	}
+
+	/*Scales the view by factor, keeping the screen point in place*/
+	public void zoom(double factor, double screenX, double screenY) {
+		offsetX = screenX - (screenX - offsetX) * factor;
+		offsetY = screenY - (screenY - offsetY) * factor;
+		scale *= factor;
+		redraw();
+	}
+
+	public void setHighlighted(Vertex v, boolean on) {
+		highlighted[v.getId()] = on;
+		redraw();
+	}
+
+	public boolean isHighlighted(Vertex v) {
+		return highlighted[v.getId()];
+	}
+
+	/*Adds a path in the Stack format of PathAlgorithms (start on
+	 * top) to the routes drawn; the Stack is not changed
+	 */
+	public void addRoute(Stack<Vertex> path) {
+		routes.add(ids(path));
+		redraw();
+	}
+
+	/*Shows the best path so far of a search that is still running,
+	 * dashed, in place of the previous one; null removes it
+	 */
+	public void setPendingRoute(Stack<Vertex> path) {
+		pending = path == null ? null : ids(path);
+		redraw();
+	}
+
+	private static int[] ids(Stack<Vertex> path) {
+		int[] ids = new int[path.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = path.get(ids.length - 1 - i).getId();
+		}
+		return ids;
+	}
+
+	/*Removes the routes, including the path of a running search*/
+	public void clearRoutes() {
+		routes.clear();
+		pending = null;
+		redraw();
+	}
+
+	public void clearHighlights() {
+		Arrays.fill(highlighted, false);
+		redraw();
+	}
+
+	public void redraw() {
+		GraphicsContext gc = getGraphicsContext2D();
+		gc.setTransform(1, 0, 0, 1, 0, 0);
+		gc.clearRect(0, 0, getWidth(), getHeight());
+		gc.setTransform(scale, 0, 0, scale, offsetX, offsetY);
+		gc.drawImage(image, 0, 0);
+		double minX = -offsetX / scale;
+		double minY = -offsetY / scale;
+		double maxX = (getWidth() - offsetX) / scale;
+		double maxY = (getHeight() - offsetY) / scale;
+		double radius = SITE_RADIUS / scale;
+		int[] sites = map.getSpatialIndex().range(minX - radius, minY - radius, maxX + radius, maxY + radius);
+		if (sites.length <= EDGE_DETAIL_SITES) {
+			drawEdges(gc, minX, minY, maxX, maxY);
+		}
+		drawRoutes(gc);
+		if (sites.length <= FULL_DETAIL_SITES) {
+			gc.setFill(Color.GREEN);
+			for (int v: sites) {
+				if (!highlighted[v]) {
+					gc.fillOval(compact.getX(v) - radius, compact.getY(v) - radius, 2 * radius, 2 * radius);
+				}
+			}
+		}
+		else {
+			drawDecimated(gc, sites);
+		}
+		gc.setFill(Color.YELLOW);
+		for (int v = 0; v < highlighted.length; v++) {
+			if (highlighted[v]) {
+				gc.fillOval(compact.getX(v) - radius, compact.getY(v) - radius, 2 * radius, 2 * radius);
+			}
+		}
+	}
+
+	/*Every edge with an end within one longest edge of the view, as
+	 * one path. An edge with both ends in that range is drawn from its
+	 * lower id only.
+	 */
+	private void drawEdges(GraphicsContext gc, double minX, double minY, double maxX, double maxY) {
+		int[] ends = map.getSpatialIndex().range(minX - longestEdge, minY - longestEdge, maxX + longestEdge, maxY + longestEdge);
+		int mark = nextStamp();
+		for (int v: ends) {
+			visible[v] = mark;
+		}
+		gc.setStroke(Color.gray(0.5, 0.6));
+		gc.setLineWidth(1 / scale);
+		gc.beginPath();
+		for (int v: ends) {
+			for (int i = compact.offsets.get(v); i < compact.offsets.get(v + 1); i++) {
+				int w = compact.targets.get(i);
+				if (w > v || visible[w] != mark) {
+					gc.moveTo(compact.getX(v), compact.getY(v));
+					gc.lineTo(compact.getX(w), compact.getY(w));
+				}
+			}
+		}
+		gc.stroke();
+	}
+
+	private void drawRoutes(GraphicsContext gc) {
+		gc.setStroke(Color.BLACK);
+		gc.setLineWidth(2 / scale);
+		gc.beginPath();
+		for (int[] route: routes) {
+			trace(gc, route);
+		}
+		gc.stroke();
+		if (pending != null) {
+			gc.setStroke(Color.ORANGE);
+			gc.setLineDashes(6 / scale);
+			gc.beginPath();
+			trace(gc, pending);
+			gc.stroke();
+			gc.setLineDashes((double[]) null);
+		}
+	}
+
+	private void trace(GraphicsContext gc, int[] route) {
+		gc.moveTo(compact.getX(route[0]), compact.getY(route[0]));
+		for (int i = 1; i < route.length; i++) {
+			gc.lineTo(compact.getX(route[i]), compact.getY(route[i]));
+		}
+	}
+
+	/*One small square per occupied screen cell*/
+	private void drawDecimated(GraphicsContext gc, int[] sites) {
+		int columns = (int) Math.ceil(getWidth() / CELL) + 2;
+		int rows = (int) Math.ceil(getHeight() / CELL) + 2;
+		if (cells.length < columns * rows) {
+			cells = new int[columns * rows];
+		}
+		int mark = nextStamp();
+		double size = 2 / scale;
+		gc.setFill(Color.GREEN);
+		for (int v: sites) {
+			int column = Math.max(0, Math.min(columns - 1, (int) ((compact.getX(v) * scale + offsetX) / CELL) + 1));
+			int row = Math.max(0, Math.min(rows - 1, (int) ((compact.getY(v) * scale + offsetY) / CELL) + 1));
+			int cell = row * columns + column;
+			if (cells[cell] != mark) {
+				cells[cell] = mark;
+				gc.fillRect(compact.getX(v) - size / 2, compact.getY(v) - size / 2, size, size);
+			}
+		}
+	}
+
+	private int nextStamp() {
+		if (stamp == Integer.MAX_VALUE) {
+			Arrays.fill(visible, 0);
+			Arrays.fill(cells, 0);
+			stamp = 0;
+		}
+		return ++stamp;
+	}
+}
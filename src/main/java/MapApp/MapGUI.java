@@ -2,10 +2,11 @@ package MapApp;
 
 import javafx.scene.control.CheckBox;
 import javafx.scene.layout.BorderPane;
-import javafx.scene.layout.StackPane;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.stage.DirectoryChooser;
 import javafx.application.Application;
+import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Pos;
@@ -14,29 +15,40 @@ import javafx.stage.Stage;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
-import javafx.scene.layout.Pane;
 import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;  
 import java.io.File;
-import java.util.Set;
+import java.util.SplittableRandom;
 import java.util.Stack;
-import javafx.scene.shape.Circle;
-import javafx.scene.input.MouseEvent;
-import javafx.scene.paint.Paint;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Line;
 
 public class MapGUI extends Application {
 	
 	/*Instance variables*/
 	
+	/*Total length of the paths kept for repeated queries*/
+	private static final int ROUTE_CACHE_VERTICES = 100000;
+	/*Number of maps, and of images, kept after they are closed*/
+	private static final int OPENED_MAPS = 4;
+	
+	private final FileCache<MapGraph> maps = new FileCache<MapGraph>(MapSnapshot::loadOrCreate, OPENED_MAPS);
+	private final FileCache<Image> images = new FileCache<Image>(file -> new Image(file.toURI().toString()), OPENED_MAPS);
 	private BorderPane pane;
 	private MapGraph map;
+	private RouteCache routes;
 	private Vertex startpt;
 	private Vertex endpt;
-	private Set<Vertex> vertices;
+	private MapCanvas canvas;
+	/*The search started by the last click on Start, until it ends*/
+	private Task<Stack<Vertex>> search;
+	/*The thread of the last search with random events or weight
+	 * reset started. Every search or reset waits for it, so a
+	 * cancelled search has stopped changing the weights before they
+	 * are reset or searched again. A* only reads the weights and stops
+	 * soon after it is cancelled, so nothing waits for it.
+	 */
+	private Thread weightWorker;
+	/*Picks the edges changed by random events outside the genetic algorithm*/
+	private final SplittableRandom random = new SplittableRandom();
 	private int clickcounter = 0;
-	private Pane nodes;
 	private Scene scene;
 	private File text;
 	private File image;
@@ -48,44 +60,43 @@ public class MapGUI extends Application {
 	
 	@Override 
 	public void start(Stage stage) {
+		RoutingMetrics.register();
 		pane = new BorderPane();
 		CheckBox events = new CheckBox("Random Events");
 		events.setIndeterminate(false);
+		CheckBox incremental = new CheckBox("Incremental");
+		incremental.disableProperty().bind(events.selectedProperty().not());
 		Button start = new Button("Start");
 		start.setOnAction(new EventHandler<ActionEvent>(){
 			@Override 
 			public void handle(ActionEvent event) {
 				/* If the random events option has not been selected,
-				 * finds and displays path found using the A* algorithm
-				 */
-				if (!events.isSelected() && map != null && startpt != null && endpt != null) {
-					PathAlgorithms pathfinders = new PathAlgorithms(startpt, endpt, map);
-					Stack<Vertex> path = pathfinders.AStar();
-					updateMap(path);
-					stage.setScene(scene);
-					stage.show();
-				}
-				/*If the random events option has been selected, 
-				 * finds and displays a path found using a genetic algorithm
+				 * finds and displays path found using the A* algorithm;
+				 * if it has, a path found using a genetic algorithm,
+				 * or with incremental also selected, one random event
+				 * and the path repaired after it
 				 */
-				else if (events.isSelected() && map != null && startpt != null && endpt != null){
-					PathAlgorithms pathfinders = new PathAlgorithms(startpt, endpt, map);
-					Stack<Vertex> path = pathfinders.geneticAlgorithm();	
-					updateMap(path);
-					stage.setScene(scene);
-					stage.show();
+				if (map != null && startpt != null && endpt != null) {
+					findRoute(events.isSelected(), incremental.isSelected());
 				}
 			}
 		});
 		Button clear = new Button("Clear");
 		clear.setOnAction(new EventHandler<ActionEvent>(){
-			/*Clears the map*/
+			/*Clears the routes and the selected sites and undoes
+			 * random events, once a cancelled search has stopped;
+			 * the map itself is kept
+			 */
 			@Override
 			public void handle(ActionEvent event) {
-				if (image != null && text != null) {
-					loadMap(image, text);
+				cancelSearch();
+				if (canvas != null) {
+					canvas.clearRoutes();
+					canvas.clearHighlights();
+					resetWeights(map);
 				}
 				startpt = endpt = null;
+				clickcounter = 0;
 				stage.setScene(scene);
 				stage.show();
 			}
@@ -117,7 +128,9 @@ public class MapGUI extends Application {
 		Region region3 = new Region();
 		HBox.setHgrow(region3,  Priority.ALWAYS);
 		Region region4 = new Region();
-		top.getChildren().addAll(region1, start, region2, clear, region3, events, region4);
+		HBox.setHgrow(region4,  Priority.ALWAYS);
+		Region region5 = new Region();
+		top.getChildren().addAll(region1, start, region2, clear, region3, events, region4, incremental, region5);
 		top.setAlignment(Pos.CENTER);
 		BorderPane.setAlignment(top, Pos.CENTER);
 		pane.setTop(top);
@@ -155,86 +168,175 @@ public class MapGUI extends Application {
 	/*Creates a new object of type
 	 * MapGraph from the user's text file
 	 * and uploads the user's map image
-	 * onto the screen, displaying a Site for
-	 * each point on the map
+	 * onto the screen, displaying a green circle for
+	 * each point on the map (see MapCanvas). A map or
+	 * image opened before and unchanged since is taken
+	 * from memory instead of being read again, with its
+	 * weights reset. Paths found on a different map
+	 * are forgotten, and a search still running is
+	 * cancelled.
 	 */
 	
 	public void loadMap(File img, File txt) {
-		map = new MapGraph(txt);
-		vertices = map.getVertices();
-		StackPane overlay = new StackPane();
-		nodes = new Pane();
-		for (Vertex v: vertices) {
-			new Site(v.getX(), v.getY(), v.getName(), v);
+		cancelSearch();
+		MapGraph graph = maps.get(txt);
+		if (graph != map) {
+			if (routes != null) {
+				routes.close();
+			}
+			map = graph;
+			routes = new RouteCache(map, ROUTE_CACHE_VERTICES);
 		}
-		Image picture = new Image(img.toURI().toString());
-		ImageView view = new ImageView(picture);
-		view.setPreserveRatio(true);
-		overlay.getChildren().addAll(view, nodes);
-		pane.setCenter(overlay);
+		resetWeights(map);
+		canvas = new MapCanvas(map, images.get(img));
+		canvas.setOnSiteClicked(this::select);
+		pane.setCenter(canvas);
+		startpt = endpt = null;
+		clickcounter = 0;
 	}
 	
-	public void updateMap(Stack<Vertex> path) {
-		Vertex first = path.pop();
-		Vertex second = first;
-		while (!second.equals(endpt)) {
-			second = path.pop();
-			Line line = new Line(first.getX(), first.getY(), second.getX(), second.getY());
-			first = second;
-			nodes.getChildren().add(line);
+	/*Searches on a background thread so the window stays
+	 * responsive, cancelling the search still running from an
+	 * earlier click. The genetic algorithm shows its best path so far
+	 * after every generation that improves on it; Task.updateValue
+	 * passes only the latest of those to the UI thread on each pulse,
+	 * so the canvas is not redrawn for paths that would not be seen.
+	 * An incremental search keeps its planner in the RouteCache
+	 * between clicks, so after a random event only the part of the
+	 * search the changed edge affects is done again.
+	 */
+	private void findRoute(boolean randomEvents, boolean incremental) {
+		cancelSearch();
+		Vertex from = startpt;
+		Vertex to = endpt;
+		MapGraph graph = map;
+		RouteCache cache = routes;
+		MapCanvas target = canvas;
+		Task<Stack<Vertex>> task = new Task<Stack<Vertex>>() {
+			@Override
+			protected Stack<Vertex> call() {
+				if (!randomEvents) {
+					return cache.route(from, to, PathAlgorithms.Algorithm.ASTAR);
+				}
+				if (incremental) {
+					graph.randomEvent(random);
+					return cache.route(from, to, PathAlgorithms.Algorithm.INCREMENTAL);
+				}
+				return new PathAlgorithms(from, to, graph).geneticAlgorithm(path -> updateValue(path));
+			}
+		};
+		task.valueProperty().addListener((observable, previous, path) -> {
+			if (task == search && task.isRunning() && path != null) {
+				target.setPendingRoute(path);
+			}
+		});
+		task.setOnSucceeded(e -> {
+			finished(task, target);
+			target.addRoute(task.getValue());
+		});
+		task.setOnFailed(e -> {
+			finished(task, target);
+			Throwable error = task.getException();
+			String message = error.getMessage() != null ? error.getMessage() : error.toString();
+			new Alert(Alert.AlertType.ERROR, "The route could not be found: " + message).show();
+		});
+		task.setOnCancelled(e -> finished(task, target));
+		search = task;
+		afterSearches(task, randomEvents);
+	}
+	
+	/*Undoes the random events on the graph, once the searches
+	 * started before have stopped changing its weights
+	 */
+	private void resetWeights(MapGraph graph) {
+		if (weightWorker != null && weightWorker.isAlive()) {
+			afterSearches(graph::resetWeights, true);
+		}
+		else {
+			graph.resetWeights();
 		}
 	}
 	
-	/*A clickable green circle superimposed
-	 * upon the image of the map that
-	 * contains coordinates corresponding to its
-	 * position as well as its name. When clicked, will be
-	 * painted yellow and recorded as either the
-	 * start or endpoint.
+	/*Runs action on a background thread once the genetic searches and
+	 * resets started before it have ended. A cancelled Task returns at
+	 * once from run().
 	 */
-	private class Site {
-		private double x;
-		private double y;
-		private String name;
-		private Vertex v;
-		
-		public Site(double x, double y, String name, Vertex v) {
-			this.x = x;
-			this.y = y;
-			this.name = name;
-			this.v = v;
-			Circle circle = new Circle(x, y, 4);
-			circle.setFill(Color.GREEN);
-			circle.setOnMouseClicked(new EventHandler<MouseEvent>() {
-				public void handle(MouseEvent e) {
-					Paint color = circle.getFill();
-					if (color.equals(Color.YELLOW)) {
-						circle.setFill(Color.GREEN);
-						if (clickcounter == 1) {
-							clickcounter--;
-							startpt = null;
-						}
-						else if (clickcounter == 2) {
-							clickcounter--;
-							endpt = null;
-						}
-					}
-					else if (color.equals(Color.GREEN)) {
-						if (clickcounter == 0) {
-							circle.setFill(Color.YELLOW);
-							clickcounter++;
-							startpt = v;
-						}
-						else if (clickcounter == 1) {
-							circle.setFill(Color.YELLOW);
-							clickcounter++;
-							endpt = v;
-						}
-					}
+	private void afterSearches(Runnable action, boolean changesWeights) {
+		Thread before = weightWorker;
+		Thread thread = new Thread(() -> {
+			if (before != null) {
+				try {
+					before.join();
 				}
-			});
-			nodes.getChildren().add(circle);
-		}	
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			action.run();
+		}, "route search");
+		thread.setDaemon(true);
+		if (changesWeights) {
+			weightWorker = thread;
+		}
+		thread.start();
+	}
+	
+	/*Removes the dashed path of the task unless a newer search has
+	 * already taken its place
+	 */
+	private void finished(Task<Stack<Vertex>> task, MapCanvas target) {
+		if (search == task || search == null) {
+			target.setPendingRoute(null);
+		}
+		if (search == task) {
+			search = null;
+		}
+	}
+	
+	/*Stops the search still running, if any. Cancelling interrupts
+	 * its thread: A* stops within a few thousand expanded vertices,
+	 * the genetic algorithm at the end of its current generation,
+	 * which afterSearches waits for.
+	 */
+	private void cancelSearch() {
+		if (search != null) {
+			Task<Stack<Vertex>> running = search;
+			search = null;
+			running.cancel();
+		}
+	}
+	
+	public void updateMap(Stack<Vertex> path) {
+		canvas.addRoute(path);
+	}
+	
+	/*Marks the site as the start or the end if it is green, and
+	 * unmarks it if it is yellow
+	 */
+	private void select(Vertex v) {
+		if (canvas.isHighlighted(v)) {
+			canvas.setHighlighted(v, false);
+			if (clickcounter == 1) {
+				clickcounter--;
+				startpt = null;
+			}
+			else if (clickcounter == 2) {
+				clickcounter--;
+				endpt = null;
+			}
+		}
+		else {
+			if (clickcounter == 0) {
+				canvas.setHighlighted(v, true);
+				clickcounter++;
+				startpt = v;
+			}
+			else if (clickcounter == 1) {
+				canvas.setHighlighted(v, true);
+				clickcounter++;
+				endpt = v;
+			}
+		}
 	}
 	
 	public static void main(String[] args) {
@@ -1,18 +1,29 @@
 package MapApp;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
 import java.util.Set;
 import org.jgrapht.*;
 import org.jgrapht.graph.*;
 import java.util.HashSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /*A graph-type data structure that contains information on the
  * coordinates of sites (Vertex) and the paths (DefaultWeightedEdge) connecting said sites. 
  */
 public class MapGraph {
-	private Graph<Vertex, DefaultWeightedEdge> graph; 
+	/*Built on first use for graphs opened from a MapSnapshot*/
+	private volatile Graph<Vertex, DefaultWeightedEdge> graph; 
+	private CompactGraph compact;
+	private DefaultWeightedEdge[] edgeObjects;
+	private Map<DefaultWeightedEdge, Integer> edgeIds;
+	private MapGraphLoader.Stats loadStats;
+	private volatile SpatialIndex spatialIndex;
+	/*The weights as loaded, copied before the first weight change*/
+	private double[] loadedWeights;
+	private final CopyOnWriteArrayList<EdgeWeightListener> listeners = new CopyOnWriteArrayList<EdgeWeightListener>();
 	
 	/*Constructor for a MapGraph that generates a SimpleWeightedGraph
 	 * from the JGraph passage based off the contents of the user's
@@ -20,117 +31,253 @@ public class MapGraph {
 	 * lengths of the paths connecting them
 	 */
 	public MapGraph(File text) {
+		this(MapGraphLoader.read(text));
+	}
+	
+	/*Builds the graph from a file that has already been read.
+	 * Self-loops and repeated edges cannot be stored in a
+	 * SimpleWeightedGraph and are skipped.
+	 */
+	MapGraph(MapGraphLoader loaded) {
+		long begin = System.nanoTime();
 		graph = new SimpleWeightedGraph<>(DefaultWeightedEdge.class);
-		boolean vertexcheck = false;
-		boolean edgecheck = false;
-		try (Scanner scanner = new Scanner(text)) {
-			while (scanner.hasNext()) {
-				String line = scanner.nextLine();
-				if (vertexcheck == true) {
-					if (line.equals("")) {
-						vertexcheck = false;
-					}
-					else {
-						String delims = "[;]+";
-						String[] tokens = line.split(delims);
-						Vertex v = new Vertex(tokens[0], Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]));
-						graph.addVertex(v);	
-					}
+		int vertexCount = loaded.getVertexCount();
+		for (int i = 0; i < vertexCount; i++) {
+			graph.addVertex(loaded.getVertex(i));
+		}
+		int edgeCount = loaded.getEdgeCount();
+		for (int i = 0; i < edgeCount; i++) {
+			Vertex start = loaded.getVertex(loaded.getEdgeSource(i));
+			Vertex end = loaded.getVertex(loaded.getEdgeTarget(i));
+			if (!start.equals(end)) {
+				DefaultWeightedEdge e = graph.addEdge(start, end);
+				if (e != null) {
+					graph.setEdgeWeight(e, loaded.getEdgeWeight(i));
 				}
-				if (edgecheck == true) {
-					if (!line.equals("")) {
-						String delims = "[;]+";
-						String[] tokens = line.split(delims);
-						Set<Vertex> set = graph.vertexSet();
-						Vertex start = null;
-						Vertex end = null;
-						for (Vertex v: set) {
-							if (v.getName().equals(tokens[0])) {
-								start = v;
-							}
-							else if (v.getName().equals(tokens[1])) {
-								end = v;
-							}
-						}
-						DefaultWeightedEdge e; 
-						if (start != null && end != null) {
-							e = graph.addEdge(start, end);
-							graph.setEdgeWeight(e, Double.parseDouble(tokens[2]));
-						}
-					}
+			}
+		}
+		loadStats = loaded.getStats();
+		freeze();
+		RoutingMetrics.get().built(System.nanoTime() - begin);
+	}
+	
+	/*Wraps a CompactGraph that was read back from a MapSnapshot.
+	 * The JGraphT view is only built if something asks for it.
+	 */
+	MapGraph(CompactGraph compact) {
+		this.compact = compact;
+	}
+	
+	/*Returns the JGraphT graph, building it from the CompactGraph
+	 * the first time. Edges are added in id order, so edgeObjects
+	 * lines up with the CompactGraph edge ids.
+	 */
+	private Graph<Vertex, DefaultWeightedEdge> view() {
+		Graph<Vertex, DefaultWeightedEdge> view = graph;
+		if (view != null) {
+			return view;
+		}
+		synchronized (this) {
+			if (graph == null) {
+				view = new SimpleWeightedGraph<>(DefaultWeightedEdge.class);
+				for (int v = 0; v < compact.getVertexCount(); v++) {
+					view.addVertex(compact.getVertex(v));
 				}
-				if (line.equals("VERTICES")) {
-					vertexcheck = true;
+				int edgeCount = compact.getEdgeCount();
+				DefaultWeightedEdge[] objects = new DefaultWeightedEdge[edgeCount];
+				Map<DefaultWeightedEdge, Integer> ids = new HashMap<DefaultWeightedEdge, Integer>(2 * edgeCount);
+				for (int e = 0; e < edgeCount; e++) {
+					objects[e] = view.addEdge(compact.getVertex(compact.edgeSource.get(e)), compact.getVertex(compact.edgeTarget.get(e)));
+					view.setEdgeWeight(objects[e], compact.edgeWeight[e]);
+					ids.put(objects[e], e);
 				}
-				else if (line.equals("EDGES")) {
-					edgecheck = true;
-				}		
+				edgeObjects = objects;
+				edgeIds = ids;
+				graph = view;
 			}
+			return graph;
+		}
+	}
+	
+	/*Builds the CompactGraph used by the routing algorithms
+	 * from the JGraphT graph. Vertices keep the order in which
+	 * they were read from the file.
+	 */
+	private void freeze() {
+		Set<Vertex> vertexSet = graph.vertexSet();
+		Vertex[] vertices = vertexSet.toArray(new Vertex[vertexSet.size()]);
+		for (int i = 0; i < vertices.length; i++) {
+			vertices[i].setId(i);
 		}
-		catch (FileNotFoundException e) {
-			e.printStackTrace();
+		Set<DefaultWeightedEdge> edgeSet = graph.edgeSet();
+		int edgeCount = edgeSet.size();
+		edgeObjects = new DefaultWeightedEdge[edgeCount];
+		edgeIds = new HashMap<DefaultWeightedEdge, Integer>(2 * edgeCount);
+		int[] sources = new int[edgeCount];
+		int[] targets = new int[edgeCount];
+		double[] weights = new double[edgeCount];
+		int e = 0;
+		for (DefaultWeightedEdge edge: edgeSet) {
+			edgeObjects[e] = edge;
+			edgeIds.put(edge, e);
+			sources[e] = graph.getEdgeSource(edge).getId();
+			targets[e] = graph.getEdgeTarget(edge).getId();
+			weights[e] = graph.getEdgeWeight(edge);
+			e++;
 		}
+		compact = CompactGraph.build(vertices, sources, targets, weights);
+	}
+	
+	/*Lines and bytes read, and the time it took to load the map,
+	 * or null if the map was opened from a MapSnapshot
+	 */
+	public MapGraphLoader.Stats getLoadStats() {
+		return loadStats;
+	}
+	
+	public CompactGraph getCompactGraph() {
+		return compact;
+	}
+	
+	/*The k-d tree over the vertex coordinates, built on first use*/
+	public SpatialIndex getSpatialIndex() {
+		SpatialIndex index = spatialIndex;
+		if (index == null) {
+			synchronized (this) {
+				if (spatialIndex == null) {
+					spatialIndex = new SpatialIndex(compact);
+				}
+				index = spatialIndex;
+			}
+		}
+		return index;
+	}
+	
+	/*The vertex closest to the point, or null for an empty map*/
+	public Vertex nearestVertex(double x, double y) {
+		int id = getSpatialIndex().nearest(x, y);
+		return id < 0 ? null : compact.getVertex(id);
+	}
+	
+	/*Converts between the JGraphT edges and the
+	 * edge ids used by the CompactGraph
+	 */
+	public int getEdgeId(DefaultWeightedEdge e) {
+		view();
+		Integer id = edgeIds.get(e);
+		return id == null ? -1 : id;
+	}
+	
+	public DefaultWeightedEdge getEdge(int id) {
+		view();
+		return edgeObjects[id];
 	}
 	
 	public Set<Vertex> getVertices() {
-		return graph.vertexSet();
+		return view().vertexSet();
 	}
 	
 	public Set<DefaultWeightedEdge> getEdges() {
-		return graph.edgeSet();
+		return view().edgeSet();
 	}
 	
 	public Set<DefaultWeightedEdge> getEdgesOf(Vertex v) {
-		return graph.edgesOf(v);
+		return view().edgesOf(v);
 
 	}
 	
 	public double getWeight(DefaultWeightedEdge e) {
-		return graph.getEdgeWeight(e);
+		return view().getEdgeWeight(e);
 	}
 	
 	public Vertex getTarget(DefaultWeightedEdge e) {
-		return graph.getEdgeTarget(e);
+		return view().getEdgeTarget(e);
 	}
 	
 	public Vertex getSource(DefaultWeightedEdge e) {
-		return graph.getEdgeSource(e);
+		return view().getEdgeSource(e);
 	}
 	
+	/*Sets the weight in the JGraphT view and in the CompactGraph,
+	 * then notifies the EdgeWeightListeners
+	 */
 	public void setEdgeWeight(DefaultWeightedEdge e, double value) {
-		graph.setEdgeWeight(e, value);
-	}	
-	
-	/*Retrieves the edge connecting the two vertices*/
-	public DefaultWeightedEdge getEdge(Vertex sourceinput, Vertex targetinput) {
-		Set<Vertex> vertices = getVertices();	
-		Vertex source = sourceinput;
-		Vertex target = targetinput;
-		for (Vertex vertex: vertices) {
-			if (sourceinput.equals(vertex)) {
-				source = vertex;
+		int id = getEdgeId(e);
+		if (id >= 0) {
+			setEdgeWeight(id, value);
+		}
+	}
+	
+	public void setEdgeWeight(int id, double value) {
+		double old;
+		synchronized (this) {
+			if (loadedWeights == null) {
+				loadedWeights = compact.edgeWeight.clone();
 			}
-			else if (targetinput.equals(vertex)) {
-				target = vertex;
+			old = compact.getEdgeWeight(id);
+			compact.setEdgeWeight(id, value);
+			if (graph != null) {
+				graph.setEdgeWeight(edgeObjects[id], value);
+			}
+		}
+		for (EdgeWeightListener listener: listeners) {
+			listener.edgeWeightChanged(id, old, value);
+		}
+	}
+	
+	/*Puts back the weight the map was loaded with on every edge
+	 * that has been changed since, notifying the listeners of each
+	 */
+	public void resetWeights() {
+		double[] loaded;
+		synchronized (this) {
+			loaded = loadedWeights;
+		}
+		if (loaded == null) {
+			return;
+		}
+		for (int e = 0; e < loaded.length; e++) {
+			if (compact.getEdgeWeight(e) != loaded[e]) {
+				setEdgeWeight(e, loaded[e]);
 			}
 		}
-		DefaultWeightedEdge edge = graph.getEdge(source, target);
-		return edge;
+	}
+	
+	/*Sets the weight of a random edge to a random number below 100*/
+	public void randomEvent(SplittableRandom random) {
+		int edge = random.nextInt(compact.getEdgeCount());
+		setEdgeWeight(edge, random.nextDouble() * 100);
+	}
+	
+	/*Goes up by one with every setEdgeWeight, so results computed
+	 * at one version can be recognized as stale later
+	 */
+	public int getVersion() {
+		return compact.getWeightVersion();
+	}
+	
+	public void addEdgeWeightListener(EdgeWeightListener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeEdgeWeightListener(EdgeWeightListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/*Retrieves the edge connecting the two vertices. Vertices
+	 * are compared by value, so the lookup goes straight to the
+	 * JGraphT graph instead of searching the vertex set first.
+	 */
+	public DefaultWeightedEdge getEdge(Vertex source, Vertex target) {
+		return view().getEdge(source, target);
 	}
 	
 	/*Retrieves all neighbors of the passed Vertex */
 	public Set<Vertex> getNeighbors(Vertex v) {
 		Set<Vertex> neighbors = new HashSet<Vertex>();
-		Set<DefaultWeightedEdge> edges = getEdgesOf(v);
-		for (DefaultWeightedEdge edge: edges) {
-			Vertex source = graph.getEdgeSource(edge);
-			Vertex target = graph.getEdgeTarget(edge);
-			if (v.equals(source)) {
-				neighbors.add(target);
-			}
-			else if (v.equals(target)){
-				neighbors.add(source);
-			}
+		int id = v.getId();
+		for (int i = compact.offsets.get(id); i < compact.offsets.get(id + 1); i++) {
+			neighbors.add(compact.getVertex(compact.targets.get(i)));
 		}
 		return neighbors;
 	}
@@ -0,0 +1,839 @@
+package MapApp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*Streaming reader for the map text format:
+ *
+ *   VERTICES
+ *   name;x;y
+ *   ...
+ *   (blank line)
+ *   EDGES
+ *   name;name;weight
+ *   ...
+ *
+ * The file is read in large blocks and tokenized on the raw bytes,
+ * so no String, array or regex match is created per line (vertex
+ * names are the only Strings that are allocated). Edge endpoints are
+ * resolved through a hash index on the name bytes as the file is read,
+ * which keeps loading linear in the size of the file.
+ *
+ * Large files are read in parallel instead; see readParallel.
+ */
+public class MapGraphLoader {
+	private static final byte[] VERTICES = "VERTICES".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] EDGES = "EDGES".getBytes(StandardCharsets.US_ASCII);
+	private static final int NONE = 0;
+	private static final int VERTEX_SECTION = 1;
+	private static final int EDGE_SECTION = 2;
+	/*What a line is, as far as the sections are concerned*/
+	private static final int BLANK = 0;
+	private static final int VERTICES_HEADER = 1;
+	private static final int EDGES_HEADER = 2;
+	private static final int DATA = 3;
+	/*Files at least this large are read with readParallel when
+	 * there is more than one core
+	 */
+	private static final long PARALLEL_THRESHOLD = 64L << 20;
+	private static final int CHUNK = 16 << 20;
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private byte[] buffer = new byte[1 << 16];
+	private final NameIndex names = new NameIndex();
+	private Vertex[] vertices = new Vertex[1024];
+	private int vertexCount;
+	private int[] edgeSource = new int[1024];
+	private int[] edgeTarget = new int[1024];
+	private double[] edgeWeight = new double[1024];
+	private int edgeCount;
+	private Stats stats;
+	/*Token boundaries of the current line, reused for every line*/
+	private final int[] tokenStart = new int[3];
+	private final int[] tokenEnd = new int[3];
+
+	/*Reads the map file into vertex and edge arrays. On an I/O error
+	 * the stack trace is printed and whatever was read is kept, in the
+	 * same way the MapGraph constructor has always handled a missing file.
+	 */
+	public static MapGraphLoader read(File text) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (threads > 1 && text.length() >= PARALLEL_THRESHOLD) {
+			try {
+				return readParallel(text, threads);
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		MapGraphLoader loader = new MapGraphLoader();
+		long begin = System.nanoTime();
+		try (InputStream in = new FileInputStream(text)) {
+			loader.parse(in);
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		loader.stats.nanos = System.nanoTime() - begin;
+		RoutingMetrics.get().parsed(loader.stats);
+		return loader;
+	}
+
+	/*Reads the map from any stream; the caller closes the stream*/
+	public static MapGraphLoader read(InputStream in) throws IOException {
+		MapGraphLoader loader = new MapGraphLoader();
+		long begin = System.nanoTime();
+		loader.parse(in);
+		loader.stats.nanos = System.nanoTime() - begin;
+		RoutingMetrics.get().parsed(loader.stats);
+		return loader;
+	}
+
+	/*Reads the map file on the given number of threads. The file is
+	 * memory-mapped a chunk of about 16 MB at a time, with every chunk
+	 * ending at the end of a line, and each thread copies one chunk at
+	 * a time into its own buffer and tokenizes it there, so the heap
+	 * holds only one chunk per thread besides the vertices and edges.
+	 *
+	 * Which section a line belongs to depends on the header and blank
+	 * lines before it, so the chunks are gone through three times:
+	 *   1. each chunk is scanned for where it would leave off for each
+	 *      section it could start in, and how many vertex and edge
+	 *      lines it would then hold; putting these together in order
+	 *      gives the section every chunk starts in, and the index of
+	 *      its first vertex and first edge;
+	 *   2. the vertex lines are parsed into their places, and the
+	 *      names are indexed in file order, as the streaming reader
+	 *      does, so a repeated name still means the later vertex;
+	 *   3. the edge lines are parsed into their places, looking the
+	 *      names up in the finished index.
+	 * The result is the same as that of read(InputStream). If an edge
+	 * line comes before a vertex line, it could name only the vertices
+	 * above it, and the file is read by the streaming reader instead.
+	 */
+	public static MapGraphLoader readParallel(File file, int threads) throws IOException {
+		return readParallel(file, threads, CHUNK);
+	}
+
+	static MapGraphLoader readParallel(File file, int threads, int chunkSize) throws IOException {
+		long begin = System.nanoTime();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			List<Chunk> chunks = split(channel, chunkSize);
+			ChunkReader reader = new ChunkReader(channel, chunks, threads);
+			try {
+				reader.run(new Pass() {
+					@Override
+					public void read(MapGraphLoader scratch, Chunk chunk, int length) {
+						scratch.scan(chunk, length);
+					}
+				});
+				/*Section, first vertex and first edge of each chunk*/
+				int section = NONE;
+				long vertexCount = 0;
+				long edgeCount = 0;
+				boolean edgesSeen = false;
+				for (Chunk chunk: chunks) {
+					chunk.section = section;
+					chunk.firstVertex = (int) vertexCount;
+					chunk.firstEdge = (int) edgeCount;
+					if (chunk.vertexAfterEdge[section] || edgesSeen && chunk.vertexLines[section] > 0) {
+						try (InputStream in = new FileInputStream(file)) {
+							return read(in);
+						}
+					}
+					edgesSeen |= chunk.edgeLines[section] > 0;
+					vertexCount += chunk.vertexLines[section];
+					edgeCount += chunk.edgeLines[section];
+					section = chunk.exit[section];
+					if (vertexCount > Integer.MAX_VALUE - 8 || edgeCount > Integer.MAX_VALUE - 8) {
+						throw new IOException(file + " has too many vertices or edges");
+					}
+				}
+
+				final MapGraphLoader loader = new MapGraphLoader();
+				loader.vertices = new Vertex[(int) vertexCount];
+				reader.run(new Pass() {
+					@Override
+					public void read(MapGraphLoader scratch, Chunk chunk, int length) {
+						if (chunk.vertexLines[chunk.section] > 0) {
+							scratch.parseVertices(chunk, length, loader.vertices);
+						}
+					}
+				});
+				/*Closes up the places of the vertex lines that were
+				 * skipped while indexing the names
+				 */
+				for (Vertex v: loader.vertices) {
+					if (v != null) {
+						loader.addVertex(v);
+					}
+				}
+				Arrays.fill(loader.vertices, loader.vertexCount, loader.vertices.length, null);
+
+				loader.edgeSource = new int[(int) edgeCount];
+				loader.edgeTarget = new int[(int) edgeCount];
+				loader.edgeWeight = new double[(int) edgeCount];
+				reader.run(new Pass() {
+					@Override
+					public void read(MapGraphLoader scratch, Chunk chunk, int length) {
+						if (chunk.edgeLines[chunk.section] > 0) {
+							scratch.parseEdges(chunk, length, loader);
+						}
+					}
+				});
+				/*Closes up the places of the edge lines that were skipped*/
+				for (int i = 0; i < edgeCount; i++) {
+					if (loader.edgeSource[i] >= 0) {
+						loader.edgeSource[loader.edgeCount] = loader.edgeSource[i];
+						loader.edgeTarget[loader.edgeCount] = loader.edgeTarget[i];
+						loader.edgeWeight[loader.edgeCount] = loader.edgeWeight[i];
+						loader.edgeCount++;
+					}
+				}
+
+				for (Chunk chunk: chunks) {
+					loader.stats.lines += chunk.lines;
+				}
+				for (MapGraphLoader scratch: reader.scratch) {
+					loader.stats.skipped += scratch.stats.skipped;
+				}
+				loader.stats.bytes = channel.size();
+				loader.stats.nanos = System.nanoTime() - begin;
+				RoutingMetrics.get().parsed(loader.stats);
+				return loader;
+			}
+			finally {
+				reader.close();
+			}
+		}
+	}
+
+	/*Splits the file into chunks of about chunkSize bytes, each
+	 * ending just after a newline (or at the end of the file)
+	 */
+	private static List<Chunk> split(FileChannel channel, int chunkSize) throws IOException {
+		long size = channel.size();
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		ByteBuffer window = ByteBuffer.allocate(4096);
+		long start = 0;
+		while (start < size) {
+			long end = start + chunkSize;
+			if (end >= size) {
+				end = size;
+			}
+			else {
+				/*Moves the end past the next newline from end - 1 on*/
+				long pos = end - 1;
+				end = size;
+				search:
+				while (pos < size) {
+					window.clear();
+					int read = channel.read(window, pos);
+					if (read <= 0) {
+						break;
+					}
+					for (int i = 0; i < read; i++) {
+						if (window.get(i) == '\n') {
+							end = pos + i + 1;
+							break search;
+						}
+					}
+					pos += read;
+				}
+			}
+			if (end - start > Integer.MAX_VALUE - 8) {
+				throw new IOException("a line is too long to read");
+			}
+			chunks.add(new Chunk(start, end));
+			start = end;
+		}
+		return chunks;
+	}
+
+	/*The section after a line of the given kind*/
+	private static int next(int section, int kind) {
+		switch (kind) {
+			case VERTICES_HEADER:
+				return VERTEX_SECTION;
+			case EDGES_HEADER:
+				return EDGE_SECTION;
+			case BLANK:
+				return section == VERTEX_SECTION ? NONE : section;
+			default:
+				return section;
+		}
+	}
+
+	private int kind(int start, int end) {
+		if (start == end) {
+			return BLANK;
+		}
+		if (matches(VERTICES, start, end)) {
+			return VERTICES_HEADER;
+		}
+		if (matches(EDGES, start, end)) {
+			return EDGES_HEADER;
+		}
+		return DATA;
+	}
+
+	/*Position of the newline ending the line that starts at start,
+	 * or length for the last line of a file without one
+	 */
+	private int lineEnd(int start, int length) {
+		int end = start;
+		while (end < length && buffer[end] != '\n') {
+			end++;
+		}
+		return end;
+	}
+
+	private static int trim(byte[] buffer, int start, int end) {
+		return end > start && buffer[end - 1] == '\r' ? end - 1 : end;
+	}
+
+	/*First pass: follows the chunk from each section it could start
+	 * in at once
+	 */
+	private void scan(Chunk chunk, int length) {
+		int[] section = {NONE, VERTEX_SECTION, EDGE_SECTION};
+		int pos = 0;
+		while (pos < length) {
+			int newline = lineEnd(pos, length);
+			int kind = kind(pos, trim(buffer, pos, newline));
+			chunk.lines++;
+			for (int s = 0; s < section.length; s++) {
+				if (kind == DATA && section[s] == VERTEX_SECTION) {
+					chunk.vertexLines[s]++;
+					chunk.vertexAfterEdge[s] |= chunk.edgeLines[s] > 0;
+				}
+				else if (kind == DATA && section[s] == EDGE_SECTION) {
+					chunk.edgeLines[s]++;
+				}
+				section[s] = next(section[s], kind);
+			}
+			pos = newline + 1;
+		}
+		for (int s = 0; s < section.length; s++) {
+			chunk.exit[s] = section[s];
+		}
+	}
+
+	/*Second pass: puts each vertex of the chunk in its place, leaving
+	 * null for lines that are not a vertex
+	 */
+	private void parseVertices(Chunk chunk, int length, Vertex[] vertices) {
+		int section = chunk.section;
+		int slot = chunk.firstVertex;
+		int pos = 0;
+		while (pos < length) {
+			int newline = lineEnd(pos, length);
+			int end = trim(buffer, pos, newline);
+			int kind = kind(pos, end);
+			if (kind == DATA && section == VERTEX_SECTION) {
+				if (tokenize(pos, end) == 3) {
+					String name = new String(buffer, tokenStart[0], tokenEnd[0] - tokenStart[0], StandardCharsets.UTF_8);
+					vertices[slot] = new Vertex(name, parseDouble(tokenStart[1], tokenEnd[1]), parseDouble(tokenStart[2], tokenEnd[2]));
+				}
+				else {
+					stats.skipped++;
+				}
+				slot++;
+			}
+			section = next(section, kind);
+			pos = newline + 1;
+		}
+	}
+
+	/*Third pass: puts each edge of the chunk in its place, with a
+	 * source of -1 for lines that are not an edge
+	 */
+	private void parseEdges(Chunk chunk, int length, MapGraphLoader loaded) {
+		int section = chunk.section;
+		int slot = chunk.firstEdge;
+		int pos = 0;
+		while (pos < length) {
+			int newline = lineEnd(pos, length);
+			int end = trim(buffer, pos, newline);
+			int kind = kind(pos, end);
+			if (kind == DATA && section == EDGE_SECTION) {
+				int source = -1;
+				int target = -1;
+				if (tokenize(pos, end) == 3) {
+					source = loaded.names.get(buffer, tokenStart[0], tokenEnd[0]);
+					target = loaded.names.get(buffer, tokenStart[1], tokenEnd[1]);
+				}
+				if (source >= 0 && target >= 0) {
+					loaded.edgeSource[slot] = source;
+					loaded.edgeTarget[slot] = target;
+					loaded.edgeWeight[slot] = parseDouble(tokenStart[2], tokenEnd[2]);
+				}
+				else {
+					loaded.edgeSource[slot] = -1;
+					stats.skipped++;
+				}
+				slot++;
+			}
+			section = next(section, kind);
+			pos = newline + 1;
+		}
+	}
+
+	/*A part of the file made of whole lines. The arrays are indexed
+	 * by the section the chunk starts in.
+	 */
+	private static final class Chunk {
+		final long start;
+		final long end;
+		final int[] exit = new int[3];
+		final int[] vertexLines = new int[3];
+		final int[] edgeLines = new int[3];
+		final boolean[] vertexAfterEdge = new boolean[3];
+		long lines;
+		/*Known after the first pass*/
+		int section;
+		int firstVertex;
+		int firstEdge;
+
+		Chunk(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+	/*What one pass does with a chunk that has been copied into the
+	 * buffer of a scratch loader
+	 */
+	private interface Pass {
+		void read(MapGraphLoader scratch, Chunk chunk, int length);
+	}
+
+	/*Runs a pass over all chunks on a fixed set of threads, each with
+	 * its own scratch loader whose buffer the chunks are copied into
+	 */
+	private static final class ChunkReader {
+		private final FileChannel channel;
+		private final List<Chunk> chunks;
+		private final MapGraphLoader[] scratch;
+		private final ExecutorService executor;
+
+		ChunkReader(FileChannel channel, List<Chunk> chunks, int threads) {
+			this.channel = channel;
+			this.chunks = chunks;
+			scratch = new MapGraphLoader[Math.max(1, Math.min(threads, chunks.size()))];
+			for (int i = 0; i < scratch.length; i++) {
+				scratch[i] = new MapGraphLoader();
+			}
+			executor = Executors.newFixedThreadPool(scratch.length, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "map-loader");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		void run(final Pass pass) throws IOException {
+			final AtomicInteger next = new AtomicInteger();
+			List<Future<Void>> running = new ArrayList<Future<Void>>(scratch.length);
+			for (final MapGraphLoader loader: scratch) {
+				running.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						for (int i = next.getAndIncrement(); i < chunks.size(); i = next.getAndIncrement()) {
+							Chunk chunk = chunks.get(i);
+							int length = (int) (chunk.end - chunk.start);
+							if (loader.buffer.length < length) {
+								loader.buffer = new byte[length];
+							}
+							channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, length).get(loader.buffer, 0, length);
+							pass.read(loader, chunk, length);
+						}
+						return null;
+					}
+				}));
+			}
+			try {
+				for (Future<Void> future: running) {
+					future.get();
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while reading the map");
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+
+		void close() {
+			executor.shutdownNow();
+		}
+	}
+
+	private MapGraphLoader() {
+		stats = new Stats();
+	}
+
+	private void parse(InputStream in) throws IOException {
+		int section = NONE;
+		int limit = 0;
+		int pos = 0;
+		boolean eof = false;
+		while (true) {
+			int newline = -1;
+			for (int i = pos; i < limit; i++) {
+				if (buffer[i] == '\n') {
+					newline = i;
+					break;
+				}
+			}
+			if (newline < 0) {
+				if (eof) {
+					if (pos < limit) {
+						section = line(section, pos, limit);
+					}
+					return;
+				}
+				/*Moves the partial line to the front and refills the block*/
+				int remaining = limit - pos;
+				if (remaining == buffer.length) {
+					buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+				}
+				System.arraycopy(buffer, pos, buffer, 0, remaining);
+				pos = 0;
+				limit = remaining;
+				int read = in.read(buffer, limit, buffer.length - limit);
+				if (read < 0) {
+					eof = true;
+				}
+				else {
+					limit += read;
+					stats.bytes += read;
+				}
+				continue;
+			}
+			section = line(section, pos, newline);
+			pos = newline + 1;
+		}
+	}
+
+	/*Handles one line from start (inclusive) to end (exclusive)
+	 * and returns the section that the next line belongs to
+	 */
+	private int line(int section, int start, int end) {
+		stats.lines++;
+		if (end > start && buffer[end - 1] == '\r') {
+			end--;
+		}
+		if (matches(VERTICES, start, end)) {
+			return VERTEX_SECTION;
+		}
+		if (matches(EDGES, start, end)) {
+			return EDGE_SECTION;
+		}
+		if (section == VERTEX_SECTION) {
+			if (start == end) {
+				return NONE;
+			}
+			if (tokenize(start, end) == 3) {
+				String name = new String(buffer, tokenStart[0], tokenEnd[0] - tokenStart[0], StandardCharsets.UTF_8);
+				Vertex v = new Vertex(name, parseDouble(tokenStart[1], tokenEnd[1]), parseDouble(tokenStart[2], tokenEnd[2]));
+				addVertex(v);
+			}
+			else {
+				stats.skipped++;
+			}
+		}
+		else if (section == EDGE_SECTION && start != end) {
+			if (tokenize(start, end) == 3) {
+				int source = names.get(buffer, tokenStart[0], tokenEnd[0]);
+				int target = names.get(buffer, tokenStart[1], tokenEnd[1]);
+				if (source >= 0 && target >= 0) {
+					addEdge(source, target, parseDouble(tokenStart[2], tokenEnd[2]));
+					return section;
+				}
+			}
+			stats.skipped++;
+		}
+		return section;
+	}
+
+	private boolean matches(byte[] word, int start, int end) {
+		if (end - start != word.length) {
+			return false;
+		}
+		for (int i = 0; i < word.length; i++) {
+			if (buffer[start + i] != word[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*Splits the line on runs of ';' (the old "[;]+" pattern) and
+	 * returns the number of tokens found, up to three
+	 */
+	private int tokenize(int start, int end) {
+		int count = 0;
+		int i = start;
+		while (count < 3) {
+			int tokenBegin = i;
+			while (i < end && buffer[i] != ';') {
+				i++;
+			}
+			tokenStart[count] = tokenBegin;
+			tokenEnd[count] = i;
+			count++;
+			while (i < end && buffer[i] == ';') {
+				i++;
+			}
+			if (i >= end) {
+				break;
+			}
+		}
+		return count;
+	}
+
+	/*Parses a plain decimal number without allocating. Values with
+	 * at most 15 significant digits and a small exponent are exact
+	 * (the same result as Double.parseDouble); anything else is handed
+	 * to Double.parseDouble.
+	 */
+	private double parseDouble(int start, int end) {
+		while (start < end && buffer[start] <= ' ') {
+			start++;
+		}
+		while (end > start && buffer[end - 1] <= ' ') {
+			end--;
+		}
+		int i = start;
+		boolean negative = false;
+		if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+			negative = buffer[i] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int scale = 0;
+		boolean point = false;
+		boolean any = false;
+		for (; i < end; i++) {
+			byte b = buffer[i];
+			if (b >= '0' && b <= '9') {
+				any = true;
+				if (digits > 0 || b != '0') {
+					digits++;
+				}
+				if (digits > 15) {
+					return slowParse(start, end);
+				}
+				mantissa = 10 * mantissa + (b - '0');
+				if (point) {
+					scale++;
+				}
+			}
+			else if (b == '.' && !point) {
+				point = true;
+			}
+			else {
+				return slowParse(start, end);
+			}
+		}
+		if (!any || scale >= POWERS_OF_TEN.length) {
+			return slowParse(start, end);
+		}
+		double value = mantissa / POWERS_OF_TEN[scale];
+		return negative ? -value : value;
+	}
+
+	private double slowParse(int start, int end) {
+		return Double.parseDouble(new String(buffer, start, end - start, StandardCharsets.US_ASCII));
+	}
+
+	private void addVertex(Vertex v) {
+		if (vertexCount == vertices.length) {
+			vertices = Arrays.copyOf(vertices, 2 * vertexCount);
+		}
+		names.put(v.getName().getBytes(StandardCharsets.UTF_8), vertexCount);
+		vertices[vertexCount++] = v;
+	}
+
+	private void addEdge(int source, int target, double weight) {
+		if (edgeCount == edgeSource.length) {
+			edgeSource = Arrays.copyOf(edgeSource, 2 * edgeCount);
+			edgeTarget = Arrays.copyOf(edgeTarget, 2 * edgeCount);
+			edgeWeight = Arrays.copyOf(edgeWeight, 2 * edgeCount);
+		}
+		edgeSource[edgeCount] = source;
+		edgeTarget[edgeCount] = target;
+		edgeWeight[edgeCount] = weight;
+		edgeCount++;
+	}
+
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	public Vertex getVertex(int index) {
+		return vertices[index];
+	}
+
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	public int getEdgeSource(int edge) {
+		return edgeSource[edge];
+	}
+
+	public int getEdgeTarget(int edge) {
+		return edgeTarget[edge];
+	}
+
+	public double getEdgeWeight(int edge) {
+		return edgeWeight[edge];
+	}
+
+	public Stats getStats() {
+		return stats;
+	}
+
+	/*Throughput of a single load*/
+	public static class Stats {
+		private long lines;
+		private long bytes;
+		private long skipped;
+		private long nanos;
+
+		public long getLines() {
+			return lines;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		/*Lines in a section that could not be read as a vertex or edge*/
+		public long getSkippedLines() {
+			return skipped;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public double getLinesPerSecond() {
+			return nanos == 0 ? 0 : lines * 1e9 / nanos;
+		}
+
+		public double getBytesPerSecond() {
+			return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d lines, %d bytes in %.1f ms (%.0f lines/s, %.1f MB/s)",
+					lines, bytes, nanos / 1e6, getLinesPerSecond(), getBytesPerSecond() / 1e6);
+		}
+	}
+
+	/*Open addressing hash table from the UTF-8 bytes of a vertex
+	 * name to its index, so that a name can be looked up straight
+	 * from the read buffer. A name that appears twice maps to the
+	 * later vertex.
+	 */
+	private static final class NameIndex {
+		private byte[][] keys = new byte[2048][];
+		private int[] values = new int[2048];
+		private int size;
+
+		void put(byte[] key, int value) {
+			if (2 * (size + 1) > keys.length) {
+				grow();
+			}
+			int mask = keys.length - 1;
+			int slot = hash(key, 0, key.length) & mask;
+			while (keys[slot] != null) {
+				if (Arrays.equals(keys[slot], key)) {
+					values[slot] = value;
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = key;
+			values[slot] = value;
+			size++;
+		}
+
+		int get(byte[] buffer, int start, int end) {
+			int mask = keys.length - 1;
+			int slot = hash(buffer, start, end) & mask;
+			int length = end - start;
+			while (keys[slot] != null) {
+				byte[] key = keys[slot];
+				if (key.length == length) {
+					int i = 0;
+					while (i < length && key[i] == buffer[start + i]) {
+						i++;
+					}
+					if (i == length) {
+						return values[slot];
+					}
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		private void grow() {
+			byte[][] oldKeys = keys;
+			int[] oldValues = values;
+			keys = new byte[2 * oldKeys.length][];
+			values = new int[2 * oldKeys.length];
+			size = 0;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != null) {
+					put(oldKeys[i], oldValues[i]);
+				}
+			}
+		}
+
+		private static int hash(byte[] bytes, int start, int end) {
+			int h = 0;
+			for (int i = start; i < end; i++) {
+				h = 31 * h + bytes[i];
+			}
+			return h ^ (h >>> 16);
+		}
+	}
+}
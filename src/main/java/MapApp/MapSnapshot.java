@@ -0,0 +1,383 @@
+package MapApp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.IntFunction;
+
+/*A binary copy of a parsed MapGraph that can be opened without
+ * parsing the text file again. The file is a fixed header followed
+ * by every CompactGraph array, little-endian, with the doubles first
+ * so that every section stays aligned:
+ *
+ *   header     magic, version, vertex count, edge count, fingerprint,
+ *              name bytes, size and modification time of the text file
+ *   double[]   x, y, weights, edgeWeight
+ *   int[]      offsets, targets, edgeIds, edgeSlots, edgeSource,
+ *              edgeTarget, nameOffsets
+ *   byte[]     vertex names, UTF-8
+ *
+ * open() maps the file read-only. Only the two weight sections are
+ * copied to the heap, since the weights are changed in place; the
+ * CompactGraph reads every other section, and the names, straight
+ * from the mapping, so processes that open the same snapshot share
+ * those pages. Names are only decoded for vertices that are used.
+ * The edge list is checked against the fingerprint and the CSR
+ * sections against the edge list, so a corrupt snapshot is refused
+ * when it is opened. A snapshot is opened as a whole mapping, so it
+ * can be at most 2 GB.
+ *
+ * loadOrCreate keeps the snapshots in a cache directory, not next to
+ * the maps.
+ */
+public final class MapSnapshot {
+	private static final int MAGIC = 0x4d47534e;
+	private static final int VERSION = 2;
+	private static final int HEADER = 48;
+	private static final String SUFFIX = ".snapshot";
+
+	private MapSnapshot() {
+	}
+
+	/*Writes the graph with its current edge weights. The snapshot is
+	 * written next to the target and renamed into place, so another
+	 * process never maps a half-written file. Fails if the snapshot
+	 * would be too large for open().
+	 */
+	public static void write(MapGraph graph, File file) throws IOException {
+		write(graph, file, -1, -1);
+	}
+
+	/*textLength and textModified identify the text file the graph
+	 * was parsed from, or are -1
+	 */
+	private static void write(MapGraph graph, File file, long textLength, long textModified) throws IOException {
+		CompactGraph compact = graph.getCompactGraph();
+		int n = compact.vertexCount;
+		byte[][] names = new byte[n][];
+		int[] nameOffsets = new int[n + 1];
+		for (int v = 0; v < n; v++) {
+			names[v] = compact.getVertex(v).getName().getBytes(StandardCharsets.UTF_8);
+			if (nameOffsets[v] + (long) names[v].length > Integer.MAX_VALUE) {
+				throw new IOException("the vertex names of the map are too long for a snapshot");
+			}
+			nameOffsets[v + 1] = nameOffsets[v] + names[v].length;
+		}
+		if (size(n, compact.edgeCount, nameOffsets[n]) > Integer.MAX_VALUE) {
+			throw new IOException("the map is too large for a snapshot");
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		try (RandomAccessFile raf = new RandomAccessFile(temp, "rw")) {
+			raf.setLength(0);
+			Writer out = new Writer(raf.getChannel());
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(n);
+			out.putInt(compact.edgeCount);
+			out.putLong(compact.fingerprint());
+			out.putLong(nameOffsets[n]);
+			out.putLong(textLength);
+			out.putLong(textModified);
+			out.putDoubles(compact.x);
+			out.putDoubles(compact.y);
+			out.putDoubles(DoubleBuffer.wrap(compact.weights));
+			out.putDoubles(DoubleBuffer.wrap(compact.edgeWeight));
+			out.putInts(compact.offsets);
+			out.putInts(compact.targets);
+			out.putInts(compact.edgeIds);
+			out.putInts(compact.edgeSlots);
+			out.putInts(compact.edgeSource);
+			out.putInts(compact.edgeTarget);
+			out.putInts(IntBuffer.wrap(nameOffsets));
+			for (byte[] name: names) {
+				out.putBytes(name);
+			}
+			out.flush();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/*Bytes in a snapshot of the given size*/
+	private static long size(long n, long m, long nameBytes) {
+		return HEADER + 8L * (2L * n + 3L * m) + 4L * (2L * (n + 1) + 8L * m) + nameBytes;
+	}
+
+	/*Maps a snapshot written by write() and wraps it in a MapGraph*/
+	public static MapGraph open(File file) throws IOException {
+		return open(file, null);
+	}
+
+	/*Same as open(file), but fails unless the snapshot was made from
+	 * the text file as it is now (same size and modification time),
+	 * if text is not null
+	 */
+	private static MapGraph open(File file, File text) throws IOException {
+		long begin = System.nanoTime();
+		MappedByteBuffer mapped;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() < HEADER || channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(file + " is not a map snapshot");
+			}
+			/*The mapping stays valid after the channel is closed*/
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+		if (in.getInt() != MAGIC) {
+			throw new IOException(file + " is not a map snapshot");
+		}
+		if (in.getInt() != VERSION) {
+			throw new IOException(file + " was written by a different version");
+		}
+		int n = in.getInt();
+		int m = in.getInt();
+		long fingerprint = in.getLong();
+		long nameBytes = in.getLong();
+		long textLength = in.getLong();
+		long textModified = in.getLong();
+		if (n < 0 || m < 0 || nameBytes < 0 || size(n, m, nameBytes) != in.capacity()) {
+			throw new IOException(file + " is truncated or corrupt");
+		}
+		if (text != null && (textLength != text.length() || textModified != text.lastModified())) {
+			throw new IOException(file + " was made from a different version of " + text);
+		}
+		DoubleBuffer x = doubles(in, n);
+		DoubleBuffer y = doubles(in, n);
+		double[] weights = getDoubles(in, 2 * m);
+		double[] edgeWeight = getDoubles(in, m);
+		IntBuffer offsets = ints(in, n + 1);
+		IntBuffer targets = ints(in, 2 * m);
+		IntBuffer edgeIds = ints(in, 2 * m);
+		IntBuffer edgeSlots = ints(in, 2 * m);
+		IntBuffer edgeSource = ints(in, m);
+		IntBuffer edgeTarget = ints(in, m);
+		IntBuffer nameOffsets = ints(in, n + 1);
+		ByteBuffer names = in.slice();
+		CompactGraph compact = new CompactGraph(offsets, targets, edgeIds, weights, x, y,
+				edgeSource, edgeTarget, edgeWeight, edgeSlots, new Names(names, nameOffsets));
+		if (!isConsistent(compact, nameOffsets, nameBytes) || compact.fingerprint() != fingerprint) {
+			throw new IOException(file + " is truncated or corrupt");
+		}
+		RoutingMetrics.get().snapshotOpened(System.nanoTime() - begin);
+		return new MapGraph(compact);
+	}
+
+	/*Same as loadOrCreate(text, directory) with the snapshots kept
+	 * in .cache/mapapp in the user's home directory
+	 */
+	public static MapGraph loadOrCreate(File text) {
+		return loadOrCreate(text, new File(System.getProperty("user.home"), ".cache" + File.separator + "mapapp"));
+	}
+
+	/*Opens the snapshot of the text file kept in directory if it was
+	 * made from the text as it is now, otherwise parses the text and
+	 * tries to write a snapshot for next time, unless the map is too
+	 * large for one. The snapshot is only a cache, so any problem with
+	 * it is reported and the text file is used.
+	 */
+	public static MapGraph loadOrCreate(File text, File directory) {
+		File snapshot = snapshotFile(text, directory);
+		if (snapshot.isFile()) {
+			try {
+				return open(snapshot, text);
+			}
+			catch (IOException e) {
+				System.err.println("not using the map snapshot: " + e.getMessage());
+			}
+		}
+		long length = text.length();
+		long modified = text.lastModified();
+		MapGraph graph = new MapGraph(text);
+		CompactGraph compact = graph.getCompactGraph();
+		/*Names take at least a byte per vertex*/
+		if (size(compact.vertexCount, compact.edgeCount, compact.vertexCount) <= Integer.MAX_VALUE) {
+			try {
+				Files.createDirectories(directory.toPath());
+				write(graph, snapshot, length, modified);
+			}
+			catch (IOException e) {
+				System.err.println("could not write the map snapshot " + snapshot + ": " + e);
+			}
+		}
+		return graph;
+	}
+
+	/*The snapshot of a text file in the cache directory, named after
+	 * the text file and a hash of its full path, so that maps with the
+	 * same name in different folders do not share one
+	 */
+	static File snapshotFile(File text, File directory) {
+		String path;
+		try {
+			path = text.getCanonicalPath();
+		}
+		catch (IOException e) {
+			path = text.getAbsolutePath();
+		}
+		return new File(directory, text.getName() + "-" + Integer.toHexString(path.hashCode()) + SUFFIX);
+	}
+
+	/*Checks that every edge sits in one CSR slot in the row of each
+	 * endpoint, pointing at the other endpoint and with its weight.
+	 * The edges then fill all 2m slots, so every target is valid too.
+	 * Also checks that the name offsets stay within the names.
+	 */
+	private static boolean isConsistent(CompactGraph compact, IntBuffer nameOffsets, long nameBytes) {
+		int n = compact.vertexCount;
+		int m = compact.edgeCount;
+		if (compact.offsets.get(0) != 0 || compact.offsets.get(n) != 2 * m
+				|| nameOffsets.get(0) != 0 || nameOffsets.get(n) != nameBytes) {
+			return false;
+		}
+		for (int v = 0; v < n; v++) {
+			if (compact.offsets.get(v) > compact.offsets.get(v + 1) || nameOffsets.get(v) > nameOffsets.get(v + 1)) {
+				return false;
+			}
+		}
+		for (int e = 0; e < m; e++) {
+			int source = compact.edgeSource.get(e);
+			int target = compact.edgeTarget.get(e);
+			int forward = compact.edgeSlots.get(2 * e);
+			int backward = compact.edgeSlots.get(2 * e + 1);
+			if (source < 0 || source >= n || target < 0 || target >= n || forward == backward
+					|| !isSlot(compact, forward, source, target, e) || !isSlot(compact, backward, target, source, e)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isSlot(CompactGraph compact, int slot, int from, int to, int edge) {
+		return slot >= compact.offsets.get(from) && slot < compact.offsets.get(from + 1)
+				&& compact.targets.get(slot) == to && compact.edgeIds.get(slot) == edge
+				&& Double.doubleToLongBits(compact.weights[slot]) == Double.doubleToLongBits(compact.edgeWeight[edge]);
+	}
+
+	/*Copies the next count doubles to the heap*/
+	private static double[] getDoubles(ByteBuffer in, int count) {
+		double[] values = new double[count];
+		in.asDoubleBuffer().get(values);
+		in.position(in.position() + 8 * count);
+		return values;
+	}
+
+	/*A view of the next count doubles, in the byte order of in*/
+	private static DoubleBuffer doubles(ByteBuffer in, int count) {
+		DoubleBuffer view = in.asDoubleBuffer();
+		view.limit(count);
+		in.position(in.position() + 8 * count);
+		return view.slice();
+	}
+
+	private static IntBuffer ints(ByteBuffer in, int count) {
+		IntBuffer view = in.asIntBuffer();
+		view.limit(count);
+		in.position(in.position() + 4 * count);
+		return view.slice();
+	}
+
+	/*Decodes vertex names from the UTF-8 bytes of all names*/
+	private static final class Names implements IntFunction<String> {
+		private final ByteBuffer bytes;
+		private final IntBuffer offsets;
+
+		Names(ByteBuffer bytes, IntBuffer offsets) {
+			this.bytes = bytes;
+			this.offsets = offsets;
+		}
+
+		/*Reads through a duplicate, so threads can decode at once*/
+		@Override
+		public String apply(int v) {
+			byte[] name = new byte[offsets.get(v + 1) - offsets.get(v)];
+			ByteBuffer view = bytes.duplicate();
+			view.position(offsets.get(v));
+			view.get(name);
+			return new String(name, StandardCharsets.UTF_8);
+		}
+	}
+
+	/*Buffers little-endian writes to a channel*/
+	private static final class Writer {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+		Writer(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void putInt(int value) throws IOException {
+			ensure(4);
+			buffer.putInt(value);
+		}
+
+		void putLong(long value) throws IOException {
+			ensure(8);
+			buffer.putLong(value);
+		}
+
+		/*Copies the whole of values (from 0 to its limit) through a
+		 * view of the buffer, a chunk at a time
+		 */
+		void putInts(IntBuffer values) throws IOException {
+			IntBuffer source = values.duplicate();
+			source.rewind();
+			while (source.hasRemaining()) {
+				ensure(4);
+				int count = Math.min(buffer.remaining() / 4, source.remaining());
+				IntBuffer chunk = source.slice();
+				chunk.limit(count);
+				buffer.asIntBuffer().put(chunk);
+				buffer.position(buffer.position() + 4 * count);
+				source.position(source.position() + count);
+			}
+		}
+
+		void putDoubles(DoubleBuffer values) throws IOException {
+			DoubleBuffer source = values.duplicate();
+			source.rewind();
+			while (source.hasRemaining()) {
+				ensure(8);
+				int count = Math.min(buffer.remaining() / 8, source.remaining());
+				DoubleBuffer chunk = source.slice();
+				chunk.limit(count);
+				buffer.asDoubleBuffer().put(chunk);
+				buffer.position(buffer.position() + 8 * count);
+				source.position(source.position() + count);
+			}
+		}
+
+		void putBytes(byte[] values) throws IOException {
+			int done = 0;
+			while (done < values.length) {
+				ensure(1);
+				int count = Math.min(buffer.remaining(), values.length - done);
+				buffer.put(values, done, count);
+				done += count;
+			}
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
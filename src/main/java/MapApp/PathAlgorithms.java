@@ -1,24 +1,36 @@
  package MapApp;
 
-import java.util.Vector;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Set;
-import java.util.HashSet;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Stack;
-import java.util.Random;
-import org.jgrapht.graph.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
 public class PathAlgorithms {
 	
 	/*instance variables and constants*/
+	/*Expanded vertices between two checks for an interrupt*/
+	private static final int INTERRUPT_CHECK = 4096;
 	private Vertex start;
 	private Vertex end;
 	private MapGraph graph;
-	private Random generator = new Random();
-	private static final int generations = 50;
-	private int populationSize;
-	private PriorityQueue<Chromosome> population;
+	private GeneticConfig geneticConfig = new GeneticConfig();
+	private List<GeneticEngine.GenerationStats> generationStats = Collections.emptyList();
+	private Heuristic heuristic;
+	private int expanded;
+	private long heapPushes;
+	private long decreaseKeys;
+	private long relaxations;
+	private Vertex meetingVertex;
+	private int forwardExpanded;
+	private int backwardExpanded;
+	
+	/*The searches that findPath can run*/
+	public enum Algorithm {
+		ASTAR, BIDIRECTIONAL_ASTAR, GENETIC, INCREMENTAL
+	}
 	
 	/*Constructor*/
 	
@@ -26,342 +38,432 @@ public class PathAlgorithms {
 		this.start = start;
 		this.end = end;
 		this.graph = graph;
+		this.heuristic = new EuclideanHeuristic(graph.getCompactGraph());
+	}
+	
+	/*Replaces the straight-line estimate used by AStar, for example
+	 * with a LandmarkHeuristic
+	 */
+	public void setHeuristic(Heuristic heuristic) {
+		this.heuristic = heuristic;
+	}
+	
+	/*Makes the genetic algorithm repeatable: with the same seed,
+	 * map and endpoints it evolves the same population, however
+	 * many threads build it
+	 */
+	public void setSeed(long seed) {
+		geneticConfig.setSeed(seed);
+	}
+	
+	/*Generations, population size, elite share and the other
+	 * settings of the genetic algorithm
+	 */
+	public void setGeneticConfig(GeneticConfig config) {
+		this.geneticConfig = config;
 	}
 	
 	/* Implements the AStar Algorithm to find the
 	 * shortest path between two points on a graph;
 	 * the heuristic function is the straight distance 
 	 * between the two points (known as the "Manhattan Distance")
+	 * unless another Heuristic has been set.
+	 * All search state lives in a pooled SearchWorkspace, so the
+	 * same MapGraph can be searched again, or from several threads
+	 * at once, without reloading it. Stops with a
+	 * CancellationException if the calling thread is interrupted.
 	 */
 
 	public Stack<Vertex> AStar() {
-		/* Priority Queue of unvisited vertices; highest priority is shortest 
-		 * recorded path to that vertex
+		long begin = System.nanoTime();
+		CompactGraph compact = graph.getCompactGraph();
+		SearchWorkspace workspace = compact.acquireWorkspace();
+		try {
+			return AStar(compact, workspace);
+		}
+		finally {
+			compact.releaseWorkspace(workspace);
+			RoutingMetrics.get().search(System.nanoTime() - begin, expanded, heapPushes, decreaseKeys, relaxations);
+		}
+	}
+	
+	private Stack<Vertex> AStar(CompactGraph compact, SearchWorkspace workspace) {
+		IntBuffer offsets = compact.offsets;
+		IntBuffer targets = compact.targets;
+		double[] weights = compact.weights;
+		Heuristic heuristic = this.heuristic;
+		int goal = end.getId();
+		heuristic.prepare();
+		/* Indexed heap of unvisited vertices ordered by the distance
+		 * travelled so far (kept in the workspace) plus the estimate
+		 * of the distance left; a vertex is queued at most once and
+		 * its key is lowered in place when a shorter path is found
 		 */
-		Queue<Vertex> unsearched = new PriorityQueue<Vertex>();
-		/*Set of previously visited vertices*/
-		Set<Vertex> searched = new HashSet<Vertex>();
-		start.setDistance(0);
-		unsearched.add(start);
+		IndexedHeap unsearched = workspace.getOpenSet();
+		int source = start.getId();
+		workspace.set(source, 0, -1);
+		unsearched.push(source, heuristic.estimate(source, goal));
+		int expansions = 0;
+		long edges = 0;
 		/* While the goal is not yet reached or
 		 * otherwise there are still neighbors 
 		 * yet unvisited, searches for the 
 		 * shortest path between the start and goal
 		 */
 		while (!unsearched.isEmpty()) {
-			Vertex current = unsearched.poll();
-			searched.add(current);
-			if (current.equals(end)) {
+			int current = unsearched.pop();
+			workspace.close(current);
+			expansions++;
+			if (expansions % INTERRUPT_CHECK == 0) {
+				checkInterrupt(expansions);
+			}
+			if (current == goal) {
 					break;
 			}
-			Set<DefaultWeightedEdge> currentEdges = graph.getEdgesOf(current);
-			for (DefaultWeightedEdge edge: currentEdges) {
-				Vertex neighbor;
-				Vertex source = graph.getSource(edge);
-				Vertex target = graph.getTarget(edge);
-				if (source.equals(current)) {
-					neighbor = target;
-				}
-				else {
-					neighbor = source;
-				}
-				if (!searched.contains(neighbor)) {
-						double tentativeDistance = current.getDistance() + graph.getWeight(edge) + neighbor.heuristicFunction(end.getX(), end.getY());
-						if (tentativeDistance < neighbor.getDistance()) {
-							neighbor.setPrevious(current);
-							neighbor.setDistance(tentativeDistance);
-							unsearched.add(neighbor);
+			double currentDistance = workspace.getDistance(current);
+			edges += offsets.get(current + 1) - offsets.get(current);
+			for (int i = offsets.get(current); i < offsets.get(current + 1); i++) {
+				int neighbor = targets.get(i);
+				if (!workspace.isClosed(neighbor)) {
+						double tentativeDistance = currentDistance + weights[i];
+						if (tentativeDistance < workspace.getDistance(neighbor)) {
+							workspace.set(neighbor, tentativeDistance, current);
+							unsearched.push(neighbor, tentativeDistance + heuristic.estimate(neighbor, goal));
 						}
 					}
 				}
 		}
-		return reconstructPath(end);			
+		expanded = expansions;
+		heapPushes = unsearched.getPushes();
+		decreaseKeys = unsearched.getDecreases();
+		relaxations = edges;
+		return reconstructPath(compact, workspace, goal);			
+	}
+	
+	/*Dijkstra from the source to every vertex it can reach. The
+	 * distances and the shortest path tree are left in the workspace.
+	 */
+	public static void shortestPathTree(CompactGraph compact, SearchWorkspace workspace, int source) {
+		IntBuffer offsets = compact.offsets;
+		IntBuffer targets = compact.targets;
+		double[] weights = compact.weights;
+		IndexedHeap queue = workspace.getOpenSet();
+		workspace.set(source, 0, -1);
+		queue.push(source, 0);
+		while (!queue.isEmpty()) {
+			int current = queue.pop();
+			workspace.close(current);
+			double currentDistance = workspace.getDistance(current);
+			for (int i = offsets.get(current); i < offsets.get(current + 1); i++) {
+				int neighbor = targets.get(i);
+				double tentativeDistance = currentDistance + weights[i];
+				if (tentativeDistance < workspace.getDistance(neighbor)) {
+					workspace.set(neighbor, tentativeDistance, current);
+					queue.push(neighbor, tentativeDistance);
+				}
+			}
+		}
+	}
+	
+	/*Search effort of the last AStar or bidirectionalAStar call on
+	 * this object
+	 */
+	public int getExpandedCount() {
+		return expanded;
+	}
+	
+	public long getHeapPushes() {
+		return heapPushes;
+	}
+	
+	public long getDecreaseKeys() {
+		return decreaseKeys;
+	}
+	
+	/*Edges looked at from the expanded vertices*/
+	public long getRelaxations() {
+		return relaxations;
+	}
+	
+	/*Answers the query from a precomputed contraction hierarchy,
+	 * falling back to AStar if the edge weights have changed since
+	 * the hierarchy was built
+	 */
+	public Stack<Vertex> contractionHierarchy(ContractionHierarchy hierarchy) {
+		if (!hierarchy.isCurrent()) {
+			return AStar();
+		}
+		long begin = System.nanoTime();
+		long[] work = new long[4];
+		Stack<Vertex> path = hierarchy.route(start, end, work);
+		expanded = (int) work[0];
+		heapPushes = work[1];
+		decreaseKeys = work[2];
+		relaxations = work[3];
+		RoutingMetrics.get().search(System.nanoTime() - begin, expanded, heapPushes, decreaseKeys, relaxations);
+		return path;
 	}
 	
 	/*returns the path found by the AStar algorithm
 	 * as a Stack data structure, which can be
 	 * processed and displayed by the GUI
 	 */
-	public Stack<Vertex> reconstructPath(Vertex end) {
-		Vertex current = end;
+	static Stack<Vertex> reconstructPath(CompactGraph compact, SearchWorkspace workspace, int end) {
 		Stack<Vertex> path = new Stack<Vertex>();
-		path.push(end);
-		while (current.getPrevious() != null) {
-			path.push(current.getPrevious());
-			current = current.getPrevious();
+		path.push(compact.getVertex(end));
+		int current = workspace.getPrevious(end);
+		while (current >= 0) {
+			path.push(compact.getVertex(current));
+			current = workspace.getPrevious(current);
 		}
 		return path;
 	}
 
-	/*Randomly generates a population of paths (of type Chromosome)
-	 * ranked by their distance from the start
-	 * point to the endpoint, then evolves them for
-	 * 50 generations. Every 9 generations, a random
-	 * event happens, meaning that one of the edges in the
-	 * graph will have its weight altered; this will change
-	 * the fitness of the population. At the end, the best
-	 * path (i.e. the shortest) is selected and returned as a
-	 * Stack data structure
+	/*The length of a path in the Stack format the searches return
+	 * (start on top), with the current edge weights; Double.MAX_VALUE
+	 * if two consecutive vertices are not neighbors
 	 */
-	
-	public Stack<Vertex> geneticAlgorithm() {
-		generatePopulation();
-		for (int i = 0; i<generations; i++) {
-			if (i % 9 == 0 && i>0) {
-				randomEvent();
+	public static double pathLength(MapGraph graph, Stack<Vertex> path) {
+		CompactGraph compact = graph.getCompactGraph();
+		double total = 0;
+		for (int i = path.size() - 1; i > 0; i--) {
+			int edge = compact.findEdge(path.get(i).getId(), path.get(i - 1).getId());
+			if (edge < 0) {
+				return Double.MAX_VALUE;
 			}
-			evolve();
-		}
-		Chromosome winner = population.poll();
-		Stack<Vertex> path1 = new Stack<Vertex>();
-		Vector<Vertex> path2 = winner.getPath();
-		for (int i = path2.size() - 1; i >= 0; i--) {
-			path1.add(path2.remove(i));
+			total += compact.getEdgeWeight(edge);
 		}
-		path1.add(start);
-		return path1;
+		return total;
 	}
-	
-	/* Generates a number of Chromosomes
-	 * based off the number of vertices contained
-	 * in the graph
+
+	/*Runs the selected algorithm; every algorithm returns the path
+	 * in the same Stack format
 	 */
-	public void generatePopulation() {
-		population = new PriorityQueue<Chromosome>();
-		Set<Vertex> vertices = graph.getVertices();
-		populationSize = (4*vertices.size())/5;
-		while (population.size() < populationSize) {
-			Chromosome individual = new Chromosome(start, end, graph);
-			population.add(individual);
-		}	
+	public Stack<Vertex> findPath(Algorithm algorithm) {
+		switch (algorithm) {
+			case BIDIRECTIONAL_ASTAR:
+				return bidirectionalAStar();
+			case GENETIC:
+				return geneticAlgorithm();
+			case INCREMENTAL:
+				return incremental();
+			default:
+				return AStar();
+		}
 	}
 	
-	/*Picks the two shortest paths in the current population
-	 * as well as two random paths from the leftovers and allows
-	 * them to crossover in an attempt to produce a shortest path 
+	/*A single LPA* search. It only pays off when the planner is kept
+	 * between weight changes, as RouteCache does for INCREMENTAL
+	 * queries.
 	 */
-	public void evolve() {
-		Stack<Chromosome> repeatedwinners = new Stack<Chromosome>();
-		Vector<Chromosome> leftovers = new Vector<Chromosome>();
-		Chromosome currentfirstplace;
-		Chromosome currentsecondplace;
-		Chromosome firstrandompick;
-		Chromosome secondrandompick;
-		while (repeatedwinners.size() < 1) {
-			currentfirstplace = population.poll();
-			currentsecondplace = population.poll();
-			if (repeatedwinners.size() > 0) {
-				if (repeatedwinners.peek() != currentfirstplace) {
-					repeatedwinners.clear();
-				}
-			}
-			repeatedwinners.add(currentfirstplace);
-			while (!population.isEmpty()) {
-				leftovers.add(population.poll());
-			}
-			int leftoversSize = leftovers.size();
-			int[] ints = generator.ints(0,leftoversSize).distinct().limit(2).toArray();
-			firstrandompick = leftovers.remove(ints[0]);
-			if (ints[0] < ints[1]) {
-				secondrandompick = leftovers.remove(ints[1] - 1);
-			}
-			else {
-				secondrandompick = leftovers.remove(ints[1]);
-			}
-			crossover(leftovers, currentfirstplace, currentsecondplace, firstrandompick, secondrandompick);
-			mutatePopulation();
-			regeneratePopulation();
+	public Stack<Vertex> incremental() {
+		IncrementalPlanner planner = new IncrementalPlanner(graph, start, end);
+		try {
+			return planner.route();
+		}
+		finally {
+			planner.close();
 		}
 	}
 	
-	/*Sets one of the weights of one of the edges
-	 * in the map to a random number. Updates the 
-	 * population of Chromosomes as well
+	/*Lets a search that is no longer wanted, such as one superseded
+	 * in the GUI, stop early
 	 */
-	public void randomEvent() {
-		Set<DefaultWeightedEdge> edges = graph.getEdges();
-		int numberOfEdges = edges.size();
-		int randomEdge = generator.nextInt(numberOfEdges);
-		double max = 100;
-		double randomweight = generator.nextDouble() * max;
-		int i = 0;
-		for (DefaultWeightedEdge edge: edges) {
-			if (i == randomEdge) {
-				double currentweight = graph.getWeight(edge);
-				graph.setEdgeWeight(edge, randomweight);
-				updatePopulation(edge, randomweight - currentweight);
-			}
-			i++;
+	private static void checkInterrupt(int expansions) {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CancellationException("interrupted after " + expansions + " expanded vertices");
 		}
 	}
 	
-	public void updatePopulation(DefaultWeightedEdge edge, double weight) {
-		Vector<Chromosome> leftovers = new Vector<Chromosome>();
-		while (!population.isEmpty()) {
-			Chromosome c = population.poll();
-			leftovers.add(c);
-			if (c.containsEdge(graph, edge)) {
-				c.updateDistance(weight);
-			}
+	/*Searches forward from the start and backward from the end at
+	 * the same time, expanding whichever side has the smaller open
+	 * set. Both sides use the average potential
+	 * p(v) = (h(v, end) - h(v, start)) / 2 (forward) and -p(v)
+	 * (backward), which keeps the two searches consistent with each
+	 * other, so the search can stop as soon as the smallest keys of
+	 * the two open sets add up to the best path found so far. Stops
+	 * like AStar if the calling thread is interrupted.
+	 */
+	public Stack<Vertex> bidirectionalAStar() {
+		long begin = System.nanoTime();
+		CompactGraph compact = graph.getCompactGraph();
+		SearchWorkspace forward = compact.acquireWorkspace();
+		SearchWorkspace backward = compact.acquireWorkspace();
+		try {
+			return bidirectionalAStar(compact, forward, backward);
+		}
+		finally {
+			compact.releaseWorkspace(forward);
+			compact.releaseWorkspace(backward);
+			RoutingMetrics.get().search(System.nanoTime() - begin, expanded, heapPushes, decreaseKeys, relaxations);
 		}
-		population.addAll(leftovers);
 	}
-
 	
-	/*Finds a common vertex that the two
-	 * parent Chromosomes have in common between
-	 * their paths. Then, switches the parts before this
-	 * vertex with the parts before that same vertex in the other
-	 * path, creating two new children.
-	 */
-	private class Offspring {
-		Chromosome firstchild; 
-		Chromosome secondchild; 
-		
-		public Offspring (Chromosome parent1, Chromosome parent2) {
-			Vector<Vertex> mother = parent1.getPath();
-			Vector<Vertex> father = parent2.getPath();
-			Vector<Vertex> commonvertices = new Vector<Vertex>();
-			for (int i = 1; i<mother.size() - 1; i++) {
-				for (int j = 1; j < father.size() -1; j++) {
-					Vertex current = mother.get(i);
-					if (current.equals(father.get(j)))  {
-						commonvertices.add(current);
-					}
-				}
+	private Stack<Vertex> bidirectionalAStar(CompactGraph compact, SearchWorkspace forward, SearchWorkspace backward) {
+		IntBuffer offsets = compact.offsets;
+		IntBuffer targets = compact.targets;
+		double[] weights = compact.weights;
+		Heuristic heuristic = this.heuristic;
+		heuristic.prepare();
+		int source = start.getId();
+		int goal = end.getId();
+		IndexedHeap forwardQueue = forward.getOpenSet();
+		IndexedHeap backwardQueue = backward.getOpenSet();
+		forward.set(source, 0, -1);
+		forwardQueue.push(source, potential(heuristic, source, source, goal));
+		backward.set(goal, 0, -1);
+		backwardQueue.push(goal, -potential(heuristic, goal, source, goal));
+		double best = source == goal ? 0 : Double.MAX_VALUE;
+		int meeting = source == goal ? source : -1;
+		int forwardCount = 0;
+		int backwardCount = 0;
+		long edges = 0;
+		while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()
+				&& forwardQueue.peekKey() + backwardQueue.peekKey() < best) {
+			boolean isForward = forwardQueue.size() <= backwardQueue.size();
+			SearchWorkspace side = isForward ? forward : backward;
+			SearchWorkspace other = isForward ? backward : forward;
+			IndexedHeap queue = isForward ? forwardQueue : backwardQueue;
+			double sign = isForward ? 1 : -1;
+			int current = queue.pop();
+			side.close(current);
+			if (isForward) {
+				forwardCount++;
 			}
-			int common = commonvertices.size();
-			if (common != 0 ) {
-				firstchild = new Chromosome(new Vector<Vertex>());
-				secondchild  = new Chromosome(new Vector<Vertex>());
-				double total1 = 0;
-				double total2 = 0;
-				int pivotvalue = generator.nextInt(common);
-				int motherpivot = mother.indexOf(commonvertices.get(pivotvalue));
-				int fatherpivot = father.indexOf(commonvertices.get(pivotvalue));
-				for (int i = 0; i < motherpivot; i++) {
-					Vertex current = mother.get(i);
-					firstchild.setPath(current);
-					if (i > 0) {
-						DefaultWeightedEdge edge = graph.getEdge(mother.get(i-1), current);
-						total1 = total1 + graph.getWeight(edge);
-					}
-				}
-				for (int j = 0; j < fatherpivot; j++) {
-					Vertex current = father.get(j);
-					secondchild.setPath(current);
-					if (j > 0) {
-						DefaultWeightedEdge edge = graph.getEdge(father.get(j-1), current);
-						total2 = total2 + graph.getWeight(edge);
-					}
-				}
-				for (int i = motherpivot; i < mother.size(); i++) {
-					Vertex current = mother.get(i);
-					Vertex vertexbefore = secondchild.getPath().lastElement();
-					DefaultWeightedEdge edge = graph.getEdge(current, vertexbefore);
-					if (edge == null) {
-						total2 = total2 + 1000;
-					}
-					else {
-						total2 = total2 + graph.getWeight(edge);
-					}
-					secondchild.setPath(current);
+			else {
+				backwardCount++;
+			}
+			if ((forwardCount + backwardCount) % INTERRUPT_CHECK == 0) {
+				checkInterrupt(forwardCount + backwardCount);
+			}
+			double currentDistance = side.getDistance(current);
+			edges += offsets.get(current + 1) - offsets.get(current);
+			for (int i = offsets.get(current); i < offsets.get(current + 1); i++) {
+				int neighbor = targets.get(i);
+				if (side.isClosed(neighbor)) {
+					continue;
 				}
-				for (int j = fatherpivot; j < father.size(); j++) {
-					Vertex current = father.get(j);
-					Vertex vertexbefore = firstchild.getPath().lastElement();
-					DefaultWeightedEdge edge = graph.getEdge(current, vertexbefore);
-					if (edge == null) {
-						total1 = total1 + 1000;
+				double tentativeDistance = currentDistance + weights[i];
+				if (tentativeDistance < side.getDistance(neighbor)) {
+					side.set(neighbor, tentativeDistance, current);
+					queue.push(neighbor, tentativeDistance + sign * potential(heuristic, neighbor, source, goal));
+					if (other.isReached(neighbor) && tentativeDistance + other.getDistance(neighbor) < best) {
+						best = tentativeDistance + other.getDistance(neighbor);
+						meeting = neighbor;
 					}
-					else {
-						total1 = total1 + graph.getWeight(edge);
-					}
-					firstchild.setPath(current);
 				}
-				firstchild.setDistance(total1);
-				secondchild.setDistance(total2);
 			}
-			else if (common == 0) {
-				firstchild = parent1;
-				secondchild  = parent2;
+		}
+		forwardExpanded = forwardCount;
+		backwardExpanded = backwardCount;
+		expanded = forwardCount + backwardCount;
+		heapPushes = forwardQueue.getPushes() + backwardQueue.getPushes();
+		decreaseKeys = forwardQueue.getDecreases() + backwardQueue.getDecreases();
+		relaxations = edges;
+		meetingVertex = meeting < 0 ? null : compact.getVertex(meeting);
+		Stack<Vertex> path = new Stack<Vertex>();
+		if (meeting < 0) {
+			path.push(end);
+			return path;
+		}
+		int[] half = new int[16];
+		int count = 0;
+		for (int v = meeting; v >= 0; v = backward.getPrevious(v)) {
+			if (count == half.length) {
+				half = Arrays.copyOf(half, 2 * count);
 			}
+			half[count++] = v;
 		}
-		
-		public Chromosome getFirstChild() {
-			return firstchild;
+		for (int i = count - 1; i >= 0; i--) {
+			path.push(compact.getVertex(half[i]));
 		}
-		
-		public Chromosome getSecondChild() {
-			return secondchild;
+		for (int v = forward.getPrevious(meeting); v >= 0; v = forward.getPrevious(v)) {
+			path.push(compact.getVertex(v));
 		}
+		return path;
+	}
+	
+	private static double potential(Heuristic heuristic, int v, int source, int goal) {
+		return (heuristic.estimate(v, goal) - heuristic.estimate(v, source)) / 2;
 	}
 	
-	/*Creates four new children and evaluates their
-	 * fitness with respect to the other members
-	 * of the population
+	/*The vertex where the two halves of the last bidirectional
+	 * search met, and the vertices each half expanded
 	 */
-	public void crossover(Vector<Chromosome> leftovers, Chromosome currentfirstplace, Chromosome currentsecondplace,
-			Chromosome firstrandompick, Chromosome secondrandompick) {
-		Offspring bestkids =  new Offspring(currentfirstplace, currentsecondplace);
-		Offspring randomkids = new Offspring(firstrandompick, secondrandompick);
-		Queue<Chromosome> newkids = new PriorityQueue<Chromosome>();
-		newkids.add(bestkids.getFirstChild());
-		newkids.add(bestkids.getSecondChild());
-		newkids.add(randomkids.getFirstChild());
-		newkids.add(randomkids.getSecondChild());
-		for (int i = 0; i<4; i++) {
-			newkids.add(leftovers.get(i));
-		}
-		for (int i = 0; i<4; i++) {
-			population.add(newkids.poll());
-		}
-		population.add(currentfirstplace);
-		population.add(currentsecondplace);
-		population.add(firstrandompick);
-		population.add(secondrandompick);
-		population.addAll(leftovers);
+	public Vertex getMeetingVertex() {
+		return meetingVertex;
+	}
+	
+	public int getForwardExpandedCount() {
+		return forwardExpanded;
 	}
 	
-	/* Randomly selects some of the
-	 * population to be mutated
+	public int getBackwardExpandedCount() {
+		return backwardExpanded;
+	}
+	
+	/*Randomly generates a population of paths (of type Chromosome)
+	 * ranked by their distance from the start
+	 * point to the endpoint, then evolves them for
+	 * 50 generations. Every 9 generations, a random
+	 * event happens, meaning that one of the edges in the
+	 * graph will have its weight altered; this will change
+	 * the fitness of the population. At the end, the best
+	 * path (i.e. the shortest) is selected and returned as a
+	 * Stack data structure. The numbers can be changed with
+	 * setGeneticConfig; see GeneticEngine. With more than one
+	 * island in the config, the populations evolve in parallel and
+	 * exchange paths; see IslandModel.
 	 */
-	public void mutatePopulation() {
-		Vector<Chromosome> leftovers = new Vector<Chromosome>();
-		for (int i = 0; i<populationSize; i++) {
-			leftovers.add(population.poll());
-		}
-		population.add(leftovers.firstElement());
-		Chromosome current;
-		for (int j = 0; j < (populationSize-1)/10; j++) {
-			current = leftovers.remove(generator.nextInt(leftovers.size()));
-			double change =  current.mutate(graph);
-			if (change != 0) {
-				current.updateDistance(change);
-			}
-			population.add(current);
-		}
-		population.addAll(leftovers);
+	
+	public Stack<Vertex> geneticAlgorithm() {
+		return geneticAlgorithm(null);
 	}
 	
-	/*Keeps a certain amount of Chromosomes
-	 * that were recognized as the best in the 
-	 * last generation (the shortest paths) and 
-	 * generates new Chromosomes to replace the rest
+	/*Same as geneticAlgorithm(), passing each path that is shorter
+	 * than every path found before it to improved (if not null) as
+	 * the search goes on. The search stops with a
+	 * CancellationException if the calling thread is interrupted.
 	 */
-	public void regeneratePopulation() {
-		int elitenumber = 1*population.size()/10;
-		Chromosome[] elite = new Chromosome[elitenumber];
-		for (int i = 0; i< elitenumber; i++) {
-			elite[i] = population.poll();
+	public Stack<Vertex> geneticAlgorithm(Consumer<Stack<Vertex>> improved) {
+		long begin = System.nanoTime();
+		try {
+			return evolve(improved);
 		}
-		population.clear();
-		for (int i = 0; i< elitenumber; i++) {
-			population.add(elite[i]);
+		finally {
+			RoutingMetrics.get().geneticRun(System.nanoTime() - begin);
 		}
-		for (int j = 0; j<populationSize - elitenumber; j++) {
-			Chromosome individual = new Chromosome(start, end, graph);
-			population.add(individual);
+	}
+	
+	private Stack<Vertex> evolve(Consumer<Stack<Vertex>> improved) {
+		double[] best = {Double.POSITIVE_INFINITY};
+		if (geneticConfig.islandsFor(Runtime.getRuntime().availableProcessors()) > 1) {
+			IslandModel islands = new IslandModel(graph, start, end, geneticConfig);
+			Stack<Vertex> path = islands.run(improved == null ? null : island -> {
+				if (island.getBest().getDistance() < best[0]) {
+					best[0] = island.getBest().getDistance();
+					improved.accept(island.getBestPath());
+				}
+			});
+			generationStats = islands.getBest().getStats();
+			return path;
 		}
+		GeneticEngine engine = new GeneticEngine(graph, start, end, geneticConfig);
+		Stack<Vertex> path = engine.run(improved == null ? null : stats -> {
+			if (stats.getBestDistance() < best[0]) {
+				best[0] = stats.getBestDistance();
+				improved.accept(engine.getBestPath());
+			}
+		});
+		generationStats = engine.getStats();
+		return path;
+	}
+	
+	/*Timing and fitness of each generation of the last
+	 * geneticAlgorithm call on this object; with islands, those of
+	 * the island that found the returned path
+	 */
+	public List<GeneticEngine.GenerationStats> getGenerationStats() {
+		return generationStats;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,181 @@
+package MapApp;
+
+import java.util.Arrays;
+
+/*The population of the genetic algorithm: an array of Chromosomes
+ * plus an inverted index from edge id to the Chromosomes whose path
+ * uses that edge, so a random event rescores only the Chromosomes
+ * that use the changed edge.
+ *
+ * Every Chromosome gets a ticket when it is indexed and its postings
+ * carry that ticket. Replacing a Chromosome or changing its path
+ * gives it a new ticket (or none), which marks the old postings
+ * stale. Stale postings are skipped and dropped the next time their
+ * edge is looked up or their list fills. Because the postings do not
+ * refer to array positions, members can be reordered freely, as
+ * selectBest does.
+ */
+final class Population {
+	private final CompactGraph compact;
+	private Chromosome[] members;
+	private int size;
+	/*postings[e] and tickets[e] are parallel lists*/
+	private final Chromosome[][] postings;
+	private final int[][] tickets;
+	private final int[] postingCount;
+	private int nextTicket;
+
+	Population(CompactGraph compact, int capacity) {
+		this.compact = compact;
+		members = new Chromosome[Math.max(capacity, 16)];
+		postings = new Chromosome[compact.getEdgeCount()][];
+		tickets = new int[compact.getEdgeCount()][];
+		postingCount = new int[compact.getEdgeCount()];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Chromosome get(int i) {
+		return members[i];
+	}
+
+	public void add(Chromosome c) {
+		if (size == members.length) {
+			members = Arrays.copyOf(members, 2 * size);
+		}
+		members[size++] = c;
+		index(c);
+	}
+
+	/*Puts c in place of the Chromosome at position i*/
+	public void set(int i, Chromosome c) {
+		members[i].ticket = 0;
+		members[i] = c;
+		index(c);
+	}
+
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			members[i].ticket = 0;
+			members[i] = null;
+		}
+		size = 0;
+	}
+
+	/*Indexes the Chromosome at position i again after its path changed*/
+	public void reindex(int i) {
+		index(members[i]);
+	}
+
+	/*Position of the shortest path*/
+	public int best() {
+		int best = 0;
+		for (int i = 1; i < size; i++) {
+			if (members[i].getDistance() < members[best].getDistance()) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/*Reorders the members so that the k shortest paths come first,
+	 * in no particular order (quickselect, linear on average)
+	 */
+	public void selectBest(int k) {
+		int low = 0;
+		int high = size - 1;
+		while (low < high && k > low && k <= high) {
+			double pivot = members[(low + high) >>> 1].getDistance();
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (members[i].getDistance() < pivot) {
+					i++;
+				}
+				while (members[j].getDistance() > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					Chromosome swap = members[i];
+					members[i++] = members[j];
+					members[j--] = swap;
+				}
+			}
+			if (k <= j) {
+				high = j;
+			}
+			else if (k >= i) {
+				low = i;
+			}
+			else {
+				return;
+			}
+		}
+	}
+
+	/*Adds delta to the length of every Chromosome whose path uses
+	 * the edge, once for every time the path uses it
+	 */
+	public void rescore(int edge, double delta) {
+		if (postings[edge] == null) {
+			return;
+		}
+		int count = compactPostings(edge);
+		Chromosome[] list = postings[edge];
+		for (int i = 0; i < count; i++) {
+			list[i].updateDistance(delta);
+			list[i].invalidatePrefix();
+		}
+	}
+
+	/*Posts c under every edge of its path with a new ticket*/
+	private void index(Chromosome c) {
+		c.ticket = ++nextTicket;
+		for (int i = 1; i < c.getLength(); i++) {
+			int edge = compact.findEdge(c.getGene(i - 1), c.getGene(i));
+			if (edge >= 0) {
+				post(edge, c);
+			}
+		}
+	}
+
+	private void post(int edge, Chromosome c) {
+		int count = postingCount[edge];
+		if (postings[edge] == null) {
+			postings[edge] = new Chromosome[4];
+			tickets[edge] = new int[4];
+		}
+		else if (count == postings[edge].length) {
+			count = compactPostings(edge);
+			if (count > postings[edge].length / 2) {
+				postings[edge] = Arrays.copyOf(postings[edge], 2 * postings[edge].length);
+				tickets[edge] = Arrays.copyOf(tickets[edge], 2 * tickets[edge].length);
+			}
+		}
+		postings[edge][count] = c;
+		tickets[edge][count] = c.ticket;
+		postingCount[edge] = count + 1;
+	}
+
+	/*Drops the stale postings of the edge and returns the new length*/
+	private int compactPostings(int edge) {
+		Chromosome[] list = postings[edge];
+		int[] ticket = tickets[edge];
+		int count = postingCount[edge];
+		int kept = 0;
+		for (int i = 0; i < count; i++) {
+			if (list[i].ticket == ticket[i]) {
+				list[kept] = list[i];
+				ticket[kept] = ticket[i];
+				kept++;
+			}
+		}
+		for (int i = kept; i < count; i++) {
+			list[i] = null;
+		}
+		postingCount[edge] = kept;
+		return kept;
+	}
+}
@@ -0,0 +1,272 @@
+package MapApp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+/*Keeps the paths found for recent (start, end, algorithm) queries
+ * so that asking again does not search again.
+ *
+ * The cache is bounded by the total number of vertices on the cached
+ * paths and drops the least recently used paths first. Paths are
+ * stored as vertex ids, with an index from edge id to the entries
+ * whose path uses the edge.
+ *
+ * When an edge gets heavier only the paths over that edge can stop
+ * being shortest, so only they are evicted. When an edge gets lighter
+ * a path that avoids it may no longer be the shortest one, so every
+ * entry is evicted. A path whose search overlapped a weight change
+ * (the graph version moved while it ran) is returned but not cached.
+ *
+ * INCREMENTAL queries are not cached as paths. Instead the cache keeps
+ * an IncrementalPlanner for each of the last few (start, end) pairs.
+ * The planner follows the weight changes itself, so asking again
+ * only repairs the part of its search that the changes affected.
+ */
+public class RouteCache implements EdgeWeightListener {
+	/*Planners kept for INCREMENTAL queries; each holds a few arrays
+	 * the size of the map
+	 */
+	private static final int PLANNERS = 4;
+	private final MapGraph graph;
+	private final CompactGraph compact;
+	private final int maxVertices;
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	private final Map<Integer, Set<Key>> byEdge = new HashMap<Integer, Set<Key>>();
+	private final LinkedHashMap<Key, IncrementalPlanner> planners = new LinkedHashMap<Key, IncrementalPlanner>(16, 0.75f, true);
+	private int vertices;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long invalidations;
+
+	/*A cache holding paths with up to maxVertices vertices in total*/
+	public RouteCache(MapGraph graph, int maxVertices) {
+		if (maxVertices < 1) {
+			throw new IllegalArgumentException("the cache must hold at least one vertex");
+		}
+		this.graph = graph;
+		this.compact = graph.getCompactGraph();
+		this.maxVertices = maxVertices;
+		graph.addEdgeWeightListener(this);
+	}
+
+	/*Stops following weight changes and empties the cache*/
+	public void close() {
+		graph.removeEdgeWeightListener(this);
+		clear();
+		synchronized (this) {
+			for (IncrementalPlanner planner: planners.values()) {
+				planner.close();
+			}
+			planners.clear();
+		}
+	}
+
+	/*The path for the query in the same format as
+	 * PathAlgorithms.findPath, from the cache if it is there. Every
+	 * call returns a new Stack, which the caller may empty.
+	 */
+	public Stack<Vertex> route(Vertex start, Vertex end, PathAlgorithms.Algorithm algorithm) {
+		Key key = new Key(start.getId(), end.getId(), algorithm);
+		if (algorithm == PathAlgorithms.Algorithm.INCREMENTAL) {
+			return planner(key, start, end).route();
+		}
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				hits++;
+				return toStack(entry.path);
+			}
+			misses++;
+		}
+		int version = graph.getVersion();
+		Stack<Vertex> path = new PathAlgorithms(start, end, graph).findPath(algorithm);
+		int[] ids = new int[path.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = path.get(ids.length - 1 - i).getId();
+		}
+		synchronized (this) {
+			if (graph.getVersion() == version && ids.length <= maxVertices && !entries.containsKey(key)) {
+				put(key, ids);
+			}
+		}
+		return toStack(ids);
+	}
+
+	/*The planner kept for the query, or a new one in place of the
+	 * least recently used
+	 */
+	private synchronized IncrementalPlanner planner(Key key, Vertex start, Vertex end) {
+		IncrementalPlanner planner = planners.get(key);
+		if (planner == null) {
+			planner = new IncrementalPlanner(graph, start, end);
+			planners.put(key, planner);
+			Iterator<IncrementalPlanner> eldest = planners.values().iterator();
+			while (planners.size() > PLANNERS) {
+				eldest.next().close();
+				eldest.remove();
+			}
+		}
+		return planner;
+	}
+
+	/*Number of IncrementalPlanners kept*/
+	public synchronized int getPlannerCount() {
+		return planners.size();
+	}
+
+	private Stack<Vertex> toStack(int[] ids) {
+		Stack<Vertex> path = new Stack<Vertex>();
+		for (int i = ids.length - 1; i >= 0; i--) {
+			path.push(compact.getVertex(ids[i]));
+		}
+		return path;
+	}
+
+	/*Caches ids, start first, then evicts the least recently used
+	 * entries until the total fits
+	 */
+	private void put(Key key, int[] ids) {
+		int[] edges = new int[Math.max(ids.length - 1, 0)];
+		for (int i = 1; i < ids.length; i++) {
+			edges[i - 1] = compact.findEdge(ids[i - 1], ids[i]);
+			if (edges[i - 1] >= 0) {
+				Set<Key> users = byEdge.get(edges[i - 1]);
+				if (users == null) {
+					users = new HashSet<Key>();
+					byEdge.put(edges[i - 1], users);
+				}
+				users.add(key);
+			}
+		}
+		entries.put(key, new Entry(ids, edges));
+		vertices += ids.length;
+		Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+		while (vertices > maxVertices) {
+			Map.Entry<Key, Entry> next = eldest.next();
+			eldest.remove();
+			unindex(next.getKey(), next.getValue());
+			evictions++;
+		}
+	}
+
+	private void unindex(Key key, Entry entry) {
+		vertices -= entry.path.length;
+		for (int edge: entry.edges) {
+			Set<Key> users = byEdge.get(edge);
+			if (users != null) {
+				users.remove(key);
+				if (users.isEmpty()) {
+					byEdge.remove(edge);
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized void edgeWeightChanged(int edge, double oldWeight, double newWeight) {
+		if (newWeight < oldWeight) {
+			invalidations += entries.size();
+			clear();
+			return;
+		}
+		if (newWeight == oldWeight) {
+			return;
+		}
+		Set<Key> users = byEdge.get(edge);
+		if (users == null) {
+			return;
+		}
+		List<Key> stale = new ArrayList<Key>(users);
+		for (Key key: stale) {
+			unindex(key, entries.remove(key));
+			invalidations++;
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		byEdge.clear();
+		vertices = 0;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/*Total number of vertices on the cached paths*/
+	public synchronized int getVertexCount() {
+		return vertices;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/*Entries dropped to make room for newer ones*/
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/*Entries dropped because an edge weight changed*/
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d paths (%d vertices), %d hits, %d misses, %d evictions, %d invalidations",
+				entries.size(), vertices, hits, misses, evictions, invalidations);
+	}
+
+	private static final class Key {
+		private final int start;
+		private final int end;
+		private final PathAlgorithms.Algorithm algorithm;
+
+		Key(int start, int end, PathAlgorithms.Algorithm algorithm) {
+			this.start = start;
+			this.end = end;
+			this.algorithm = algorithm;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key k = (Key) o;
+			return start == k.start && end == k.end && algorithm == k.algorithm;
+		}
+
+		@Override
+		public int hashCode() {
+			return (31 * start + end) * 31 + algorithm.hashCode();
+		}
+	}
+
+	/*A cached path, start first, and the edges along it*/
+	private static final class Entry {
+		final int[] path;
+		final int[] edges;
+
+		Entry(int[] path, int[] edges) {
+			this.path = path;
+			this.edges = edges;
+		}
+	}
+}
@@ -0,0 +1,291 @@
+package MapApp;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*Counters and latency histograms for the searches, the genetic
+ * algorithm and map loading of the whole process, published over JMX
+ * as MapApp:type=RoutingMetrics once register() has been called.
+ *
+ * The searches count their work in local variables and report it
+ * here once per query, and the genetic algorithm once per generation,
+ * so nothing is added to the inner loops. Counters are LongAdders,
+ * which spread concurrent increments over several cells instead of
+ * making every thread contend for one, and timings go into
+ * LatencyHistograms. Reading an attribute sums the cells; it may miss
+ * a report that is being made at that moment.
+ *
+ * Recording can be turned off over JMX (the Enabled attribute), after
+ * which every report is a single volatile read.
+ */
+public final class RoutingMetrics implements RoutingMetricsMBean {
+	public static final String OBJECT_NAME = "MapApp:type=RoutingMetrics";
+	private static final RoutingMetrics INSTANCE = new RoutingMetrics();
+	private volatile boolean enabled = true;
+
+	private final LongAdder searches = new LongAdder();
+	private final LongAdder expanded = new LongAdder();
+	private final LongAdder pushes = new LongAdder();
+	private final LongAdder decreases = new LongAdder();
+	private final LongAdder relaxations = new LongAdder();
+	private final LatencyHistogram searchTime = new LatencyHistogram();
+
+	private final LongAdder generations = new LongAdder();
+	private final LongAdder crossovers = new LongAdder();
+	private final LongAdder crossoverSuccesses = new LongAdder();
+	private final LatencyHistogram geneticTime = new LatencyHistogram();
+	private final LatencyHistogram generationTime = new LatencyHistogram();
+	private final LatencyHistogram crossoverTime = new LatencyHistogram();
+	private final LatencyHistogram walkTime = new LatencyHistogram();
+	private final LatencyHistogram mutationTime = new LatencyHistogram();
+
+	private final LongAdder lines = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+	private final LatencyHistogram parseTime = new LatencyHistogram();
+	private final LatencyHistogram buildTime = new LatencyHistogram();
+	private final LatencyHistogram snapshotTime = new LatencyHistogram();
+
+	private RoutingMetrics() {
+	}
+
+	/*The metrics of this process*/
+	public static RoutingMetrics get() {
+		return INSTANCE;
+	}
+
+	/*Publishes the metrics on the platform MBean server, if they are
+	 * not published already
+	 */
+	public static void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+		}
+		catch (InstanceAlreadyExistsException e) {
+			/* registered before */
+		}
+		catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*One point-to-point search (AStar, bidirectional or contraction
+	 * hierarchy): its time, the vertices taken off the open set, the
+	 * inserts and decrease-keys on it, and the edges looked at
+	 */
+	void search(long nanos, long expandedVertices, long heapPushes, long decreaseKeys, long edges) {
+		if (!enabled) {
+			return;
+		}
+		searches.increment();
+		expanded.add(expandedVertices);
+		pushes.add(heapPushes);
+		decreases.add(decreaseKeys);
+		relaxations.add(edges);
+		searchTime.record(nanos);
+	}
+
+	/*One generation of the genetic algorithm, with the time of each
+	 * phase and how many of its crossovers found a common vertex
+	 */
+	void generation(GeneticEngine.GenerationStats stats, int attempts, int successes) {
+		if (!enabled) {
+			return;
+		}
+		generations.increment();
+		crossovers.add(attempts);
+		crossoverSuccesses.add(successes);
+		generationTime.record(stats.getNanos());
+		crossoverTime.record(stats.getCrossoverNanos());
+		walkTime.record(stats.getWalkNanos());
+		mutationTime.record(stats.getMutationNanos());
+	}
+
+	/*A whole run of the genetic algorithm*/
+	void geneticRun(long nanos) {
+		if (enabled) {
+			geneticTime.record(nanos);
+		}
+	}
+
+	void parsed(MapGraphLoader.Stats stats) {
+		if (!enabled) {
+			return;
+		}
+		lines.add(stats.getLines());
+		bytes.add(stats.getBytes());
+		parseTime.record(stats.getNanos());
+	}
+
+	/*Building the graphs from a parsed map file*/
+	void built(long nanos) {
+		if (enabled) {
+			buildTime.record(nanos);
+		}
+	}
+
+	void snapshotOpened(long nanos) {
+		if (enabled) {
+			snapshotTime.record(nanos);
+		}
+	}
+
+	private static double millis(double nanos) {
+		return nanos / 1e6;
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	@Override
+	public long getSearches() {
+		return searches.sum();
+	}
+
+	@Override
+	public long getVerticesExpanded() {
+		return expanded.sum();
+	}
+
+	@Override
+	public long getHeapPushes() {
+		return pushes.sum();
+	}
+
+	/*Every expanded vertex is one pop*/
+	@Override
+	public long getHeapPops() {
+		return expanded.sum();
+	}
+
+	@Override
+	public long getDecreaseKeys() {
+		return decreases.sum();
+	}
+
+	@Override
+	public long getRelaxations() {
+		return relaxations.sum();
+	}
+
+	@Override
+	public double getSearchMeanMillis() {
+		return millis(searchTime.getMean());
+	}
+
+	@Override
+	public double getSearchP50Millis() {
+		return millis(searchTime.getPercentile(0.5));
+	}
+
+	@Override
+	public double getSearchP99Millis() {
+		return millis(searchTime.getPercentile(0.99));
+	}
+
+	@Override
+	public double getSearchMaxMillis() {
+		return millis(searchTime.getMax());
+	}
+
+	@Override
+	public long getGenerations() {
+		return generations.sum();
+	}
+
+	@Override
+	public long getCrossovers() {
+		return crossovers.sum();
+	}
+
+	/*Share of the crossovers whose parents had a vertex in common, so
+	 * that they produced children instead of copies of the parents
+	 */
+	@Override
+	public double getCrossoverSuccessRate() {
+		long attempts = crossovers.sum();
+		return attempts == 0 ? 0 : (double) crossoverSuccesses.sum() / attempts;
+	}
+
+	@Override
+	public double getGenerationMeanMillis() {
+		return millis(generationTime.getMean());
+	}
+
+	@Override
+	public double getGenerationP99Millis() {
+		return millis(generationTime.getPercentile(0.99));
+	}
+
+	@Override
+	public double getCrossoverPhaseMeanMillis() {
+		return millis(crossoverTime.getMean());
+	}
+
+	@Override
+	public double getWalkPhaseMeanMillis() {
+		return millis(walkTime.getMean());
+	}
+
+	@Override
+	public double getMutationPhaseMeanMillis() {
+		return millis(mutationTime.getMean());
+	}
+
+	@Override
+	public long getMapLoads() {
+		return parseTime.getCount() + snapshotTime.getCount();
+	}
+
+	@Override
+	public long getLoadedLines() {
+		return lines.sum();
+	}
+
+	@Override
+	public long getLoadedBytes() {
+		return bytes.sum();
+	}
+
+	@Override
+	public double getParseMeanMillis() {
+		return millis(parseTime.getMean());
+	}
+
+	@Override
+	public double getBuildMeanMillis() {
+		return millis(buildTime.getMean());
+	}
+
+	@Override
+	public double getSnapshotOpenMeanMillis() {
+		return millis(snapshotTime.getMean());
+	}
+
+	@Override
+	public String[] getLatencies() {
+		return new String[] {
+			"search: " + searchTime,
+			"genetic run: " + geneticTime,
+			"generation: " + generationTime,
+			"crossover phase: " + crossoverTime,
+			"walk phase: " + walkTime,
+			"mutation phase: " + mutationTime,
+			"parse: " + parseTime,
+			"build: " + buildTime,
+			"snapshot open: " + snapshotTime
+		};
+	}
+}
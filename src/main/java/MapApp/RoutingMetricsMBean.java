@@ -0,0 +1,64 @@
+package MapApp;
+
+/*The attributes RoutingMetrics publishes over JMX. Times are in
+ * milliseconds; percentiles are accurate to within 1/16.
+ */
+public interface RoutingMetricsMBean {
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	/*Searches*/
+	long getSearches();
+
+	long getVerticesExpanded();
+
+	long getHeapPushes();
+
+	long getHeapPops();
+
+	long getDecreaseKeys();
+
+	long getRelaxations();
+
+	double getSearchMeanMillis();
+
+	double getSearchP50Millis();
+
+	double getSearchP99Millis();
+
+	double getSearchMaxMillis();
+
+	/*Genetic algorithm*/
+	long getGenerations();
+
+	long getCrossovers();
+
+	double getCrossoverSuccessRate();
+
+	double getGenerationMeanMillis();
+
+	double getGenerationP99Millis();
+
+	double getCrossoverPhaseMeanMillis();
+
+	double getWalkPhaseMeanMillis();
+
+	double getMutationPhaseMeanMillis();
+
+	/*Map loading*/
+	long getMapLoads();
+
+	long getLoadedLines();
+
+	long getLoadedBytes();
+
+	double getParseMeanMillis();
+
+	double getBuildMeanMillis();
+
+	double getSnapshotOpenMeanMillis();
+
+	/*One line per latency histogram*/
+	String[] getLatencies();
+}
@@ -0,0 +1,489 @@
+package MapApp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Stack;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/*Answers routing queries over HTTP for other programs on the same
+ * machine, using the JDK's built-in server bound to the loopback
+ * address only. The map is loaded once.
+ *
+ *   GET /route?from=a&to=b[&algorithm=astar|bidirectional_astar|incremental]
+ *       {"from":"a","to":"b","distance":12.5,"path":["a","c","b"]}
+ *   GET /matrix?sources=a,b&targets=c,d
+ *       {"sources":[...],"targets":[...],"distances":[[...],[...]]}
+ *   GET /nearest?x=1.5&y=2&k=3
+ *       {"vertices":["a","c","b"]}
+ *   GET /status
+ *
+ * An unreachable pair has the distance null. Vertices are named as in
+ * the map file; a route can instead start or end at the vertex
+ * nearest to a point, given as fromX and fromY or toX and toY.
+ *
+ * The HTTP thread only parses the request; the search runs on a pool
+ * with a bounded queue, and the response is sent from there when it
+ * is done. When the queue is full the request is turned away at once
+ * with 503 and Retry-After, rather than piling up. Identical queries
+ * that arrive while one is already running share its answer instead
+ * of searching again, and routes go through a RouteCache. A matrix
+ * is computed on its worker thread alone, and one with more than
+ * getMaxMatrixCells entries is refused with 413.
+ *
+ * The genetic algorithm is not offered: its random events would
+ * change the weights under every other query.
+ *
+ * Usage: RoutingServer map.txt [--port n] [--threads n] [--queue n] [--max-matrix n]
+ */
+public class RoutingServer {
+	private final MapGraph graph;
+	private final Map<String, Vertex> byName = new HashMap<String, Vertex>();
+	private final RouteCache routes;
+	private final ThreadPoolExecutor workers;
+	private final HttpServer server;
+	private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<String, CompletableFuture<String>>();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong coalesced = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private volatile long maxMatrixCells = 10000;
+
+	/*Binds to the given port on the loopback address (0 picks a free
+	 * port); nothing is answered until start()
+	 */
+	public RoutingServer(MapGraph graph, int port, int threads, int queueCapacity) throws IOException {
+		this.graph = graph;
+		CompactGraph compact = graph.getCompactGraph();
+		for (int v = 0; v < compact.getVertexCount(); v++) {
+			byName.put(compact.getVertex(v).getName(), compact.getVertex(v));
+		}
+		routes = new RouteCache(graph, 1000000);
+		workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "routing");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/route", new Handler() {
+			@Override
+			Query parse(Map<String, String> parameters) {
+				return route(parameters);
+			}
+		});
+		server.createContext("/matrix", new Handler() {
+			@Override
+			Query parse(Map<String, String> parameters) {
+				return matrix(parameters);
+			}
+		});
+		server.createContext("/nearest", new Handler() {
+			@Override
+			Query parse(Map<String, String> parameters) {
+				return nearest(parameters);
+			}
+		});
+		server.createContext("/status", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, 200, status());
+			}
+		});
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/*Stops accepting requests, waits up to a second for the ones
+	 * being answered, and stops the workers
+	 */
+	public void stop() {
+		server.stop(1);
+		workers.shutdownNow();
+		routes.close();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/*Largest number of sources times targets a /matrix request may ask for*/
+	public long getMaxMatrixCells() {
+		return maxMatrixCells;
+	}
+
+	public void setMaxMatrixCells(long cells) {
+		this.maxMatrixCells = cells;
+	}
+
+	/*A parsed request: the key identifying identical queries and
+	 * the work that answers it
+	 */
+	private static final class Query {
+		final String key;
+		final Answer answer;
+
+		Query(String key, Answer answer) {
+			this.key = key;
+			this.answer = answer;
+		}
+	}
+
+	private interface Answer {
+		String compute();
+	}
+
+	/*A request that could not be parsed, sent back with its status*/
+	private static final class BadRequest extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		final int status;
+
+		BadRequest(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	private abstract class Handler implements HttpHandler {
+		abstract Query parse(Map<String, String> parameters);
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			requests.incrementAndGet();
+			if (!exchange.getRequestMethod().equals("GET")) {
+				send(exchange, 405, error("only GET is supported"));
+				return;
+			}
+			Query query;
+			try {
+				query = parse(parameters(exchange.getRequestURI().getRawQuery()));
+			}
+			catch (BadRequest e) {
+				send(exchange, e.status, error(e.getMessage()));
+				return;
+			}
+			CompletableFuture<String> answer = new CompletableFuture<String>();
+			CompletableFuture<String> running = inFlight.putIfAbsent(query.key, answer);
+			if (running != null) {
+				coalesced.incrementAndGet();
+				answer = running;
+			}
+			else {
+				final CompletableFuture<String> result = answer;
+				try {
+					workers.execute(() -> {
+						try {
+							result.complete(query.answer.compute());
+						}
+						catch (RuntimeException e) {
+							result.completeExceptionally(e);
+						}
+						finally {
+							inFlight.remove(query.key, result);
+						}
+					});
+				}
+				catch (RejectedExecutionException e) {
+					inFlight.remove(query.key, answer);
+					rejected.incrementAndGet();
+					exchange.getResponseHeaders().set("Retry-After", "1");
+					send(exchange, 503, error("too many requests in progress"));
+					answer.completeExceptionally(e);
+					return;
+				}
+			}
+			answer.whenComplete((body, failure) -> {
+				try {
+					if (failure == null) {
+						send(exchange, 200, body);
+					}
+					else if (failure instanceof RejectedExecutionException) {
+						exchange.getResponseHeaders().set("Retry-After", "1");
+						send(exchange, 503, error("too many requests in progress"));
+					}
+					else {
+						send(exchange, 500, error(String.valueOf(failure.getMessage())));
+					}
+				}
+				catch (IOException e) {
+					exchange.close();
+				}
+			});
+		}
+	}
+
+	private Query route(Map<String, String> parameters) {
+		final Vertex start = vertex(parameters, "from");
+		final Vertex end = vertex(parameters, "to");
+		String name = parameters.containsKey("algorithm") ? parameters.get("algorithm").toUpperCase(Locale.ROOT) : "ASTAR";
+		final PathAlgorithms.Algorithm algorithm;
+		try {
+			algorithm = PathAlgorithms.Algorithm.valueOf(name);
+		}
+		catch (IllegalArgumentException e) {
+			throw new BadRequest(400, "unknown algorithm " + name);
+		}
+		if (algorithm == PathAlgorithms.Algorithm.GENETIC) {
+			throw new BadRequest(400, "the genetic algorithm changes edge weights and is not served");
+		}
+		return new Query("route " + start.getId() + " " + end.getId() + " " + algorithm, () -> {
+			Stack<Vertex> path = routes.route(start, end, algorithm);
+			StringBuilder json = new StringBuilder();
+			json.append("{\"from\":").append(quote(start.getName()))
+				.append(",\"to\":").append(quote(end.getName())).append(",\"distance\":");
+			if (!path.peek().equals(start)) {
+				return json.append("null,\"path\":[]}").toString();
+			}
+			json.append(PathAlgorithms.pathLength(graph, path)).append(",\"path\":[");
+			for (int i = path.size() - 1; i >= 0; i--) {
+				json.append(quote(path.get(i).getName())).append(i > 0 ? "," : "");
+			}
+			return json.append("]}").toString();
+		});
+	}
+
+	private Query matrix(Map<String, String> parameters) {
+		final List<Vertex> sources = vertices(parameters, "sources");
+		final List<Vertex> targets = vertices(parameters, "targets");
+		long cells = (long) sources.size() * targets.size();
+		if (cells > maxMatrixCells) {
+			throw new BadRequest(413, "a matrix of " + cells + " distances is over the limit of " + maxMatrixCells);
+		}
+		StringBuilder key = new StringBuilder("matrix");
+		for (Vertex v: sources) {
+			key.append(' ').append(v.getId());
+		}
+		key.append(" to");
+		for (Vertex v: targets) {
+			key.append(' ').append(v.getId());
+		}
+		return new Query(key.toString(), () -> {
+			DistanceMatrix matrix = DistanceMatrix.compute(graph, sources, targets, false, false);
+			StringBuilder json = new StringBuilder("{\"sources\":");
+			names(json, sources).append(",\"targets\":");
+			names(json, targets).append(",\"distances\":[");
+			for (int i = 0; i < sources.size(); i++) {
+				json.append(i > 0 ? ",[" : "[");
+				for (int j = 0; j < targets.size(); j++) {
+					double distance = matrix.get(i, j);
+					json.append(j > 0 ? "," : "").append(distance == Double.MAX_VALUE ? "null" : Double.toString(distance));
+				}
+				json.append(']');
+			}
+			return json.append("]}").toString();
+		});
+	}
+
+	private Query nearest(Map<String, String> parameters) {
+		final double x = number(parameters, "x");
+		final double y = number(parameters, "y");
+		final int k = parameters.containsKey("k") ? (int) number(parameters, "k") : 1;
+		if (k < 1) {
+			throw new BadRequest(400, "k must be at least 1");
+		}
+		return new Query("nearest " + x + " " + y + " " + k, () -> {
+			CompactGraph compact = graph.getCompactGraph();
+			List<Vertex> found = new ArrayList<Vertex>();
+			for (int id: graph.getSpatialIndex().nearest(x, y, k)) {
+				found.add(compact.getVertex(id));
+			}
+			return names(new StringBuilder("{\"vertices\":"), found).append('}').toString();
+		});
+	}
+
+	private static double number(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		if (value == null) {
+			throw new BadRequest(400, "missing parameter " + name);
+		}
+		try {
+			return Double.parseDouble(value);
+		}
+		catch (NumberFormatException e) {
+			throw new BadRequest(400, name + " is not a number");
+		}
+	}
+
+	/*The vertex with the name given by the parameter, or the one
+	 * nearest to the point given by name + "X" and name + "Y"
+	 */
+	private Vertex vertex(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		if (value == null && parameters.containsKey(name + "X")) {
+			Vertex nearest = graph.nearestVertex(number(parameters, name + "X"), number(parameters, name + "Y"));
+			if (nearest == null) {
+				throw new BadRequest(404, "the map has no vertices");
+			}
+			return nearest;
+		}
+		if (value == null) {
+			throw new BadRequest(400, "missing parameter " + name);
+		}
+		Vertex v = byName.get(value);
+		if (v == null) {
+			throw new BadRequest(404, "unknown vertex " + value);
+		}
+		return v;
+	}
+
+	private List<Vertex> vertices(Map<String, String> parameters, String name) {
+		String value = parameters.get(name);
+		if (value == null || value.isEmpty()) {
+			throw new BadRequest(400, "missing parameter " + name);
+		}
+		List<Vertex> list = new ArrayList<Vertex>();
+		for (String part: value.split(",")) {
+			Vertex v = byName.get(part);
+			if (v == null) {
+				throw new BadRequest(404, "unknown vertex " + part);
+			}
+			list.add(v);
+		}
+		return list;
+	}
+
+	private static Map<String, String> parameters(String query) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (query == null) {
+			return parameters;
+		}
+		try {
+			for (String pair: query.split("&")) {
+				int equals = pair.indexOf('=');
+				if (equals > 0) {
+					parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+							URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+				}
+			}
+		}
+		catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			throw new BadRequest(400, "malformed query string");
+		}
+		return parameters;
+	}
+
+	private String status() {
+		RoutingMetrics metrics = RoutingMetrics.get();
+		return "{\"requests\":" + requests.get() + ",\"coalesced\":" + coalesced.get() + ",\"rejected\":" + rejected.get()
+				+ ",\"queued\":" + workers.getQueue().size() + ",\"active\":" + workers.getActiveCount()
+				+ ",\"cacheHits\":" + routes.getHits() + ",\"cacheMisses\":" + routes.getMisses()
+				+ ",\"searches\":" + metrics.getSearches() + ",\"expanded\":" + metrics.getVerticesExpanded()
+				+ ",\"searchP99Ms\":" + metrics.getSearchP99Millis() + "}";
+	}
+
+	/*The pool the queries run on, so that tests can keep it busy*/
+	ThreadPoolExecutor getWorkers() {
+		return workers;
+	}
+
+	/*Requests answered by another identical request in flight*/
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	/*Requests turned away with 503 because the queue was full*/
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	private static StringBuilder names(StringBuilder json, List<Vertex> vertices) {
+		json.append('[');
+		for (int i = 0; i < vertices.size(); i++) {
+			json.append(i > 0 ? "," : "").append(quote(vertices.get(i).getName()));
+		}
+		return json.append(']');
+	}
+
+	private static String quote(String s) {
+		StringBuilder quoted = new StringBuilder(s.length() + 2).append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				quoted.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				quoted.append(String.format("\\u%04x", (int) c));
+			}
+			else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	private static String error(String message) {
+		return "{\"error\":" + quote(message) + "}";
+	}
+
+	private static void send(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		String map = null;
+		int port = 8080;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int queue = 256;
+		long maxMatrix = 10000;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--port") && i + 1 < args.length) {
+				port = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--threads") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--queue") && i + 1 < args.length) {
+				queue = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--max-matrix") && i + 1 < args.length) {
+				maxMatrix = Long.parseLong(args[++i]);
+			}
+			else if (map == null && !args[i].startsWith("--")) {
+				map = args[i];
+			}
+			else {
+				map = null;
+				break;
+			}
+		}
+		if (map == null) {
+			System.err.println("usage: RoutingServer map.txt [--port n] [--threads n] [--queue n] [--max-matrix n]");
+			System.exit(2);
+		}
+		RoutingMetrics.register();
+		RoutingServer server = new RoutingServer(MapSnapshot.loadOrCreate(new File(map)), port, threads, queue);
+		server.setMaxMatrixCells(maxMatrix);
+		server.start();
+		System.err.println("answering on http://127.0.0.1:" + server.getPort() + "/route?from=...&to=...");
+	}
+}
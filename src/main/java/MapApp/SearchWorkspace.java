@@ -0,0 +1,80 @@
+package MapApp;
+
+import java.util.Arrays;
+
+/*The state of a single shortest path query: the best known
+ * distance and the previous vertex of every vertex that the search
+ * has reached, indexed by vertex id, and its open set. Keeping this out of Vertex lets
+ * any number of searches run on the same MapGraph at once, each with
+ * its own workspace.
+ *
+ * Resetting is O(1): every entry is tagged with the generation in
+ * which it was written, and entries from an older generation read as
+ * unreached. Workspaces are pooled by the CompactGraph (see
+ * CompactGraph.acquireWorkspace) so their arrays are reused across
+ * queries.
+ */
+public final class SearchWorkspace {
+	private final int[] reached;
+	private final int[] closed;
+	private final double[] distance;
+	private final int[] previous;
+	private final IndexedHeap openSet;
+	private int generation;
+
+	SearchWorkspace(int vertexCount) {
+		reached = new int[vertexCount];
+		closed = new int[vertexCount];
+		distance = new double[vertexCount];
+		previous = new int[vertexCount];
+		openSet = new IndexedHeap(vertexCount);
+	}
+
+	/*Starts a new query; every vertex is unreached and open again*/
+	public void reset() {
+		if (generation == Integer.MAX_VALUE) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(closed, 0);
+			generation = 0;
+		}
+		generation++;
+		openSet.clear();
+	}
+	
+	/*The priority queue of the query, emptied on every reset*/
+	public IndexedHeap getOpenSet() {
+		return openSet;
+	}
+
+	public int size() {
+		return distance.length;
+	}
+
+	public boolean isReached(int v) {
+		return reached[v] == generation;
+	}
+
+	/*Best known distance, or Double.MAX_VALUE if v was not reached*/
+	public double getDistance(int v) {
+		return reached[v] == generation ? distance[v] : Double.MAX_VALUE;
+	}
+
+	/*Previous vertex on the best known path, or -1*/
+	public int getPrevious(int v) {
+		return reached[v] == generation ? previous[v] : -1;
+	}
+
+	public void set(int v, double dist, int prev) {
+		reached[v] = generation;
+		distance[v] = dist;
+		previous[v] = prev;
+	}
+
+	public boolean isClosed(int v) {
+		return closed[v] == generation;
+	}
+
+	public void close(int v) {
+		closed[v] = generation;
+	}
+}
@@ -0,0 +1,285 @@
+package MapApp;
+
+import java.util.Arrays;
+
+/*A k-d tree over the vertex coordinates of a CompactGraph, for
+ * finding the vertices nearest to a point or inside a rectangle
+ * without scanning every vertex.
+ *
+ * The tree is implicit: the vertex ids are reordered so that the
+ * vertex in the middle of every range splits it, the ones before it
+ * on one side of the splitting line and the ones after it on the
+ * other. Each range is split along the axis in which its points are
+ * spread the most. Ranges of LEAF vertices or fewer are scanned
+ * directly. The coordinates are copied into tree order so a search
+ * reads them sequentially.
+ *
+ * Queries return vertex ids; the index does not change after it is
+ * built, so any number of threads can query it at once.
+ */
+public final class SpatialIndex {
+	private static final int LEAF = 8;
+	private final int[] ids;
+	private final double[] xs;
+	private final double[] ys;
+	/*true where the range around that position splits on x*/
+	private final boolean[] splitX;
+
+	public SpatialIndex(CompactGraph compact) {
+		int n = compact.getVertexCount();
+		ids = new int[n];
+		xs = new double[n];
+		ys = new double[n];
+		splitX = new boolean[n];
+		for (int v = 0; v < n; v++) {
+			ids[v] = v;
+			xs[v] = compact.getX(v);
+			ys[v] = compact.getY(v);
+		}
+		build(0, n);
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	private void build(int low, int high) {
+		while (high - low > LEAF) {
+			double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+			for (int i = low; i < high; i++) {
+				minX = Math.min(minX, xs[i]);
+				maxX = Math.max(maxX, xs[i]);
+				minY = Math.min(minY, ys[i]);
+				maxY = Math.max(maxY, ys[i]);
+			}
+			boolean onX = maxX - minX >= maxY - minY;
+			int mid = (low + high) >>> 1;
+			select(low, high - 1, mid, onX ? xs : ys);
+			splitX[mid] = onX;
+			build(low, mid);
+			low = mid + 1;
+		}
+	}
+
+	/*Quickselect: puts the k-th smallest key of [low, high] at k, the
+	 * smaller ones before it and the larger ones after it
+	 */
+	private void select(int low, int high, int k, double[] keys) {
+		while (low < high) {
+			double pivot = keys[(low + high) >>> 1];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (keys[i] < pivot) {
+					i++;
+				}
+				while (keys[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(i++, j--);
+				}
+			}
+			if (k <= j) {
+				high = j;
+			}
+			else if (k >= i) {
+				low = i;
+			}
+			else {
+				return;
+			}
+		}
+	}
+
+	private void swap(int i, int j) {
+		int id = ids[i];
+		ids[i] = ids[j];
+		ids[j] = id;
+		double x = xs[i];
+		xs[i] = xs[j];
+		xs[j] = x;
+		double y = ys[i];
+		ys[i] = ys[j];
+		ys[j] = y;
+	}
+
+	/*The vertex closest to (x, y), or -1 if there are no vertices*/
+	public int nearest(double x, double y) {
+		int[] found = nearest(x, y, 1);
+		return found.length == 0 ? -1 : found[0];
+	}
+
+	/*The k vertices closest to (x, y), closest first (fewer if the
+	 * graph has fewer vertices)
+	 */
+	public int[] nearest(double x, double y, int k) {
+		Candidates best = new Candidates(Math.min(k, ids.length));
+		if (best.capacity > 0) {
+			nearest(0, ids.length, x, y, best);
+		}
+		return best.sorted();
+	}
+
+	private void nearest(int low, int high, double x, double y, Candidates best) {
+		if (high - low <= LEAF) {
+			for (int i = low; i < high; i++) {
+				best.offer(ids[i], squared(i, x, y));
+			}
+			return;
+		}
+		int mid = (low + high) >>> 1;
+		best.offer(ids[mid], squared(mid, x, y));
+		double offset = splitX[mid] ? x - xs[mid] : y - ys[mid];
+		/*the side of the line with the point first; the other only if
+		 * the line is closer than the k-th best so far
+		 */
+		if (offset < 0) {
+			nearest(low, mid, x, y, best);
+			if (offset * offset < best.bound()) {
+				nearest(mid + 1, high, x, y, best);
+			}
+		}
+		else {
+			nearest(mid + 1, high, x, y, best);
+			if (offset * offset < best.bound()) {
+				nearest(low, mid, x, y, best);
+			}
+		}
+	}
+
+	/*Every vertex with minX <= x <= maxX and minY <= y <= maxY, in no
+	 * particular order
+	 */
+	public int[] range(double minX, double minY, double maxX, double maxY) {
+		Found found = new Found();
+		range(0, ids.length, minX, minY, maxX, maxY, found);
+		return Arrays.copyOf(found.ids, found.count);
+	}
+
+	private void range(int low, int high, double minX, double minY, double maxX, double maxY, Found found) {
+		while (high - low > LEAF) {
+			int mid = (low + high) >>> 1;
+			if (xs[mid] >= minX && xs[mid] <= maxX && ys[mid] >= minY && ys[mid] <= maxY) {
+				found.add(ids[mid]);
+			}
+			double split = splitX[mid] ? xs[mid] : ys[mid];
+			double min = splitX[mid] ? minX : minY;
+			double max = splitX[mid] ? maxX : maxY;
+			if (min <= split) {
+				if (max >= split) {
+					range(mid + 1, high, minX, minY, maxX, maxY, found);
+				}
+				high = mid;
+			}
+			else {
+				low = mid + 1;
+			}
+		}
+		for (int i = low; i < high; i++) {
+			if (xs[i] >= minX && xs[i] <= maxX && ys[i] >= minY && ys[i] <= maxY) {
+				found.add(ids[i]);
+			}
+		}
+	}
+
+	private static final class Found {
+		int[] ids = new int[16];
+		int count;
+
+		void add(int id) {
+			if (count == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * count);
+			}
+			ids[count++] = id;
+		}
+	}
+
+	private double squared(int i, double x, double y) {
+		double dx = xs[i] - x;
+		double dy = ys[i] - y;
+		return dx * dx + dy * dy;
+	}
+
+	/*A max-heap of the k closest vertices seen so far*/
+	private static final class Candidates {
+		final int capacity;
+		final int[] ids;
+		final double[] distances;
+		int size;
+
+		Candidates(int capacity) {
+			this.capacity = capacity;
+			ids = new int[capacity];
+			distances = new double[capacity];
+		}
+
+		/*Squared distance to the k-th closest, or infinity until k are found*/
+		double bound() {
+			return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+		}
+
+		void offer(int id, double distance) {
+			if (size < capacity) {
+				int i = size++;
+				while (i > 0 && distances[(i - 1) / 2] < distance) {
+					ids[i] = ids[(i - 1) / 2];
+					distances[i] = distances[(i - 1) / 2];
+					i = (i - 1) / 2;
+				}
+				ids[i] = id;
+				distances[i] = distance;
+			}
+			else if (distance < distances[0]) {
+				int i = 0;
+				while (true) {
+					int child = 2 * i + 1;
+					if (child >= size) {
+						break;
+					}
+					if (child + 1 < size && distances[child + 1] > distances[child]) {
+						child++;
+					}
+					if (distances[child] <= distance) {
+						break;
+					}
+					ids[i] = ids[child];
+					distances[i] = distances[child];
+					i = child;
+				}
+				ids[i] = id;
+				distances[i] = distance;
+			}
+		}
+
+		/*The ids, closest first; empties the heap*/
+		int[] sorted() {
+			int[] result = new int[size];
+			while (size > 0) {
+				result[size - 1] = ids[0];
+				int lastId = ids[--size];
+				double last = distances[size];
+				int i = 0;
+				while (true) {
+					int child = 2 * i + 1;
+					if (child >= size) {
+						break;
+					}
+					if (child + 1 < size && distances[child + 1] > distances[child]) {
+						child++;
+					}
+					if (distances[child] <= last) {
+						break;
+					}
+					ids[i] = ids[child];
+					distances[i] = distances[child];
+					i = child;
+				}
+				ids[i] = lastId;
+				distances[i] = last;
+			}
+			return result;
+		}
+	}
+}
@@ -15,6 +15,7 @@ public class Vertex implements Comparable<Vertex> {
 		private double y;
 		private Vertex previous;
 		private double distance= Double.MAX_VALUE;
+		private int id = -1;
 		
 		public Vertex(String name, double x, double y) {
 			this.name = name;
@@ -34,6 +35,17 @@ public class Vertex implements Comparable<Vertex> {
 			return name;
 		}
 		
+		/*The position of this Vertex in the CompactGraph
+		 * of its MapGraph, or -1 before the graph is frozen
+		 */
+		public int getId() {
+			return id;
+		}
+		
+		void setId(int id) {
+			this.id = id;
+		}
+		
 		public void setDistance(double distance) {
 			this.distance = distance;
 		}
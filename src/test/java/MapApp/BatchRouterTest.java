@@ -0,0 +1,86 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import org.junit.Test;
+
+/**
+ * Checks that the batch router answers queries in input order with
+ * shortest distances, reports bad queries in place, and that the
+ * latency histogram's percentiles are within its bucket error.
+ */
+public class BatchRouterTest
+{
+    private static double dijkstra(MapGraph graph, int a, int b)
+    {
+        CompactGraph compact = graph.getCompactGraph();
+        SearchWorkspace workspace = compact.acquireWorkspace();
+        try {
+            PathAlgorithms.shortestPathTree(compact, workspace, a);
+            return workspace.getDistance(b);
+        }
+        finally {
+            compact.releaseWorkspace(workspace);
+        }
+    }
+
+    @Test
+    public void answersInOrder() throws Exception
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(10, 7));
+        Random random = new Random(7);
+        int[][] pairs = new int[200][2];
+        StringBuilder queries = new StringBuilder("# start;end\n");
+        for (int[] pair: pairs) {
+            pair[0] = random.nextInt(100);
+            pair[1] = random.nextInt(100);
+            queries.append('g').append(pair[0]).append(";g").append(pair[1]).append("\n\n");
+        }
+        queries.append("g1;nowhere\n");
+        ExecutorService executor = BatchRouter.newExecutor(3, true);
+        BatchRouter router = new BatchRouter(graph, PathAlgorithms.Algorithm.ASTAR, executor, 8);
+        StringWriter out = new StringWriter();
+        long count = router.run(new BufferedReader(new StringReader(queries.toString())), out);
+        executor.shutdown();
+
+        assertEquals(201, count);
+        String[] lines = out.toString().split("\n");
+        assertEquals(201, lines.length);
+        for (int i = 0; i < pairs.length; i++) {
+            String[] fields = lines[i].split(";");
+            assertEquals("g" + pairs[i][0], fields[0]);
+            assertEquals("g" + pairs[i][1], fields[1]);
+            assertEquals(dijkstra(graph, pairs[i][0], pairs[i][1]), Double.parseDouble(fields[2]), 1e-6);
+            String[] path = fields.length > 3 ? fields[3].split(",") : new String[0];
+            assertEquals(fields[0], path[0]);
+            assertEquals(fields[1], path[path.length - 1]);
+        }
+        assertEquals("g1;nowhere;error;unknown vertex nowhere", lines[200]);
+        assertEquals(1, router.getErrors());
+        assertEquals(200, router.getLatencies().getCount());
+    }
+
+    @Test
+    public void percentilesAreWithinOneBucket()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 100000; v++) {
+            histogram.record(v * 1000);
+        }
+        for (double p: new double[] {0.5, 0.9, 0.99, 0.999}) {
+            double exact = p * 100000 * 1000;
+            long estimate = histogram.getPercentile(p);
+            assertTrue(p + ": " + estimate, estimate >= exact && estimate <= exact * (1 + 1.0 / 16));
+        }
+        assertEquals(100000000L, histogram.getMax());
+        assertEquals(100000000L, histogram.getPercentile(1));
+        assertEquals(50000500.0, histogram.getMean(), 1e-6);
+    }
+}
@@ -0,0 +1,48 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.util.Random;
+import java.util.Stack;
+
+import org.junit.Test;
+
+/**
+ * Checks contraction hierarchy routes against AStar.
+ */
+public class ContractionHierarchyTest
+{
+    @Test
+    public void routesMatchAStar() throws Exception
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.randomGeometric(3000, 8, 3));
+        CompactGraph compact = graph.getCompactGraph();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        File file = File.createTempFile("map", ".ch");
+        file.deleteOnExit();
+        hierarchy.save(file);
+        ContractionHierarchy loaded = ContractionHierarchy.load(file, graph);
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            Vertex a = compact.getVertex(random.nextInt(compact.getVertexCount()));
+            Vertex b = compact.getVertex(random.nextInt(compact.getVertexCount()));
+            PathAlgorithms search = new PathAlgorithms(a, b, graph);
+            Stack<Vertex> expected = search.AStar();
+            Stack<Vertex> actual = search.contractionHierarchy(loaded);
+            assertEquals(expected.size() == 1, actual.size() == 1);
+            assertEquals(b, actual.get(0));
+            assertEquals(PathAlgorithms.pathLength(graph, expected), PathAlgorithms.pathLength(graph, actual), 1e-6);
+        }
+    }
+
+    @Test
+    public void weightChangesMakeTheHierarchyStale()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(10, 1));
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        graph.setEdgeWeight(graph.getEdge(0), 1000);
+        assertFalse(hierarchy.isCurrent());
+    }
+}
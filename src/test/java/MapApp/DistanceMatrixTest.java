@@ -0,0 +1,84 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+
+import org.junit.Test;
+
+/**
+ * Checks the distance matrix against a full Dijkstra for every pair,
+ * with more sources than targets and the other way round, and that
+ * its paths have the length it reports.
+ */
+public class DistanceMatrixTest
+{
+    private static double dijkstra(MapGraph graph, int a, int b)
+    {
+        CompactGraph compact = graph.getCompactGraph();
+        SearchWorkspace workspace = compact.acquireWorkspace();
+        try {
+            PathAlgorithms.shortestPathTree(compact, workspace, a);
+            return workspace.getDistance(b);
+        }
+        finally {
+            compact.releaseWorkspace(workspace);
+        }
+    }
+
+    private static List<Vertex> sites(CompactGraph compact, Random random, int count)
+    {
+        List<Vertex> sites = new ArrayList<Vertex>();
+        for (int i = 0; i < count; i++) {
+            sites.add(compact.getVertex(random.nextInt(compact.getVertexCount())));
+        }
+        return sites;
+    }
+
+    private static void check(MapGraph graph, List<Vertex> sources, List<Vertex> targets)
+    {
+        DistanceMatrix matrix = DistanceMatrix.compute(graph, sources, targets, true);
+        assertEquals(sources.size(), matrix.getRowCount());
+        assertEquals(targets.size(), matrix.getColumnCount());
+        for (int i = 0; i < sources.size(); i++) {
+            for (int j = 0; j < targets.size(); j++) {
+                double expected = dijkstra(graph, sources.get(i).getId(), targets.get(j).getId());
+                assertEquals(expected, matrix.get(i, j), 1e-6);
+                Stack<Vertex> path = matrix.getPath(i, j);
+                assertEquals(sources.get(i), path.peek());
+                assertEquals(targets.get(j), path.firstElement());
+                assertEquals(expected, PathAlgorithms.pathLength(graph, path), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void matchesDijkstraForEveryPair()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.roadLike(12, 6));
+        CompactGraph compact = graph.getCompactGraph();
+        Random random = new Random(6);
+        check(graph, sites(compact, random, 9), sites(compact, random, 4));
+        check(graph, sites(compact, random, 3), sites(compact, random, 8));
+    }
+
+    @Test
+    public void pathsFollowWeightChanges()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(15, 2));
+        CompactGraph compact = graph.getCompactGraph();
+        Random random = new Random(2);
+        List<Vertex> sites = sites(compact, random, 6);
+        DistanceMatrix matrix = DistanceMatrix.compute(graph, sites);
+        for (int i = 0; i < 30; i++) {
+            graph.setEdgeWeight(random.nextInt(compact.getEdgeCount()), random.nextDouble() * 100);
+        }
+        assertEquals(false, matrix.isCurrent());
+        Stack<Vertex> path = matrix.getPath(0, 5);
+        assertEquals(dijkstra(graph, sites.get(0).getId(), sites.get(5).getId()),
+                PathAlgorithms.pathLength(graph, path), 1e-6);
+    }
+}
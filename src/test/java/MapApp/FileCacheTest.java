@@ -0,0 +1,80 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+/**
+ * Checks that FileCache loads a file once, loads it again after it
+ * has changed on disk, and drops the least recently used files.
+ */
+public class FileCacheTest
+{
+    private int loads;
+
+    private final Function<File, String> reader = new Function<File, String>()
+    {
+        @Override
+        public String apply(File file)
+        {
+            loads++;
+            try {
+                return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    };
+
+    @Test
+    public void loadsEachVersionOnce() throws IOException
+    {
+        File file = MapGraphTest.writeMap("first");
+        FileCache<String> cache = new FileCache<String>(reader, 2);
+        String first = cache.get(file);
+        assertSame(first, cache.get(file));
+        assertSame(first, cache.get(new File(file.getParentFile(), "./" + file.getName())));
+        assertEquals(1, loads);
+        assertEquals(2, cache.getHits());
+
+        Files.write(file.toPath(), "second version".getBytes("UTF-8"));
+        String second = cache.get(file);
+        assertNotSame(first, second);
+        assertEquals("second version", second);
+
+        /* same size, only the modification time tells them apart */
+        Files.write(file.toPath(), "third  version".getBytes("UTF-8"));
+        file.setLastModified(file.lastModified() + 2000);
+        assertEquals("third  version", cache.get(file));
+        assertEquals(3, loads);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void dropsLeastRecentlyUsed() throws IOException
+    {
+        File a = MapGraphTest.writeMap("a");
+        File b = MapGraphTest.writeMap("b");
+        File c = MapGraphTest.writeMap("c");
+        FileCache<String> cache = new FileCache<String>(reader, 2);
+        cache.get(a);
+        cache.get(b);
+        cache.get(a);
+        cache.get(c);
+        assertEquals(2, cache.size());
+        assertEquals(3, loads);
+        cache.get(a);
+        assertEquals(3, loads);
+        cache.get(b);
+        assertEquals(4, loads);
+    }
+}
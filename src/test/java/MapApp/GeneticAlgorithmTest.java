@@ -0,0 +1,222 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.Stack;
+import java.util.concurrent.CancellationException;
+
+import org.junit.Test;
+
+/**
+ * Checks that the genetic algorithm, whose population is built on
+ * several threads, is repeatable when it is given a seed, and that
+ * crossover and mutation keep path lengths exact.
+ */
+public class GeneticAlgorithmTest
+{
+    private static List<String> run(String map, long seed)
+    {
+        MapGraph graph = SyntheticMaps.load(map);
+        CompactGraph compact = graph.getCompactGraph();
+        Vertex start = compact.getVertex(0);
+        Vertex end = compact.getVertex(compact.getVertexCount() - 1);
+        PathAlgorithms search = new PathAlgorithms(start, end, graph);
+        search.setSeed(seed);
+        Stack<Vertex> path = search.geneticAlgorithm();
+        assertEquals(start, path.peek());
+        assertEquals(end, path.firstElement());
+        List<String> names = new ArrayList<String>();
+        for (Vertex v: path) {
+            names.add(v.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void sameSeedGivesSamePath()
+    {
+        String map = SyntheticMaps.roadLike(8, 3);
+        List<String> first = run(map, 42);
+        assertTrue(first.size() >= 2);
+        assertEquals(first, run(map, 42));
+        assertEquals(first, run(map, 42));
+    }
+
+    private static double length(CompactGraph compact, Chromosome c)
+    {
+        double total = 0;
+        for (int i = 1; i < c.getLength(); i++) {
+            int edge = compact.findEdge(c.getGene(i - 1), c.getGene(i));
+            total += edge < 0 ? Chromosome.PENALTY : compact.getEdgeWeight(edge);
+        }
+        return total;
+    }
+
+    @Test
+    public void crossoverAndMutationKeepLengthsExact()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(12, 6));
+        CompactGraph compact = graph.getCompactGraph();
+        Vertex start = compact.getVertex(0);
+        Vertex end = compact.getVertex(compact.getVertexCount() - 1);
+        SplittableRandom walks = new SplittableRandom(4);
+        SplittableRandom random = walks.split();
+        List<Chromosome> pool = new ArrayList<Chromosome>();
+        for (int i = 0; i < 40; i++) {
+            pool.add(new Chromosome(start, end, graph, walks.split()));
+        }
+        int crossed = 0;
+        for (int round = 0; round < 500; round++) {
+            Chromosome mother = pool.get(random.nextInt(pool.size()));
+            Chromosome father = pool.get(random.nextInt(pool.size()));
+            Chromosome[] children = Chromosome.crossover(mother, father, random);
+            if (children != null) {
+                crossed++;
+                for (Chromosome child: children) {
+                    assertEquals(start.getId(), child.getGene(0));
+                    assertEquals(end.getId(), child.getGene(child.getLength() - 1));
+                    assertEquals(length(compact, child), child.getDistance(), 1e-6);
+                    pool.set(random.nextInt(pool.size()), child);
+                }
+            }
+            Chromosome mutant = pool.get(random.nextInt(pool.size()));
+            mutant.updateDistance(mutant.mutate(graph, walks));
+            assertEquals(length(compact, mutant), mutant.getDistance(), 1e-6);
+        }
+        assertTrue(crossed > 0);
+    }
+
+    /* the crossover used to look its pivot up with indexOf, which finds
+     * a vertex that a mutation has repeated at its first position, the
+     * start here, and left a child with an empty head */
+    @Test
+    public void crossoverPivotsWhereTheCommonVertexWasFound()
+    {
+        MapGraph graph = SyntheticMaps.load("VERTICES\nS;0;0\nA;1;1\nC;1;-1\nB;2;1\nE;3;0\n\n"
+                + "EDGES\nS;A;1\nS;C;1\nS;E;5\nA;B;1\nB;E;1\n");
+        CompactGraph compact = graph.getCompactGraph();
+        int s = 0, a = 1, c = 2, b = 3, e = 4;
+        Chromosome mother = Chromosome.of(compact, s, a, s, e);
+        Chromosome father = Chromosome.of(compact, s, c, s, a, b, e);
+        /* the pivot is the repeated S or A */
+        List<String> expected = Arrays.asList(
+                Arrays.toString(new int[] {s, a, s, a, b, e}) + Arrays.toString(new int[] {s, c, s, e}),
+                Arrays.toString(new int[] {s, a, b, e}) + Arrays.toString(new int[] {s, c, s, a, s, e}));
+        SplittableRandom random = new SplittableRandom(2);
+        Set<String> seen = new HashSet<String>();
+        for (int round = 0; round < 40; round++) {
+            Chromosome[] children = Chromosome.crossover(mother, father, random);
+            String pair = genes(children[0]) + genes(children[1]);
+            assertTrue(pair, expected.contains(pair));
+            seen.add(pair);
+            for (Chromosome child: children) {
+                assertEquals(length(compact, child), child.getDistance(), 1e-6);
+            }
+        }
+        assertEquals(2, seen.size());
+    }
+
+    private static String genes(Chromosome chromosome)
+    {
+        int[] genes = new int[chromosome.getLength()];
+        for (int i = 0; i < genes.length; i++) {
+            genes[i] = chromosome.getGene(i);
+        }
+        return Arrays.toString(genes);
+    }
+
+    @Test
+    public void engineRecordsEveryGeneration()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(10, 1));
+        CompactGraph compact = graph.getCompactGraph();
+        GeneticConfig config = new GeneticConfig();
+        config.setGenerations(12);
+        config.setPopulationSize(60);
+        config.setEliteFraction(0.2);
+        config.setMutationRate(0.3);
+        config.setEventInterval(5);
+        config.setSeed(5L);
+        GeneticEngine engine = new GeneticEngine(graph, compact.getVertex(0),
+                compact.getVertex(compact.getVertexCount() - 1), config);
+        engine.run();
+        List<GeneticEngine.GenerationStats> stats = engine.getStats();
+        assertEquals(12, stats.size());
+        for (int i = 0; i < stats.size(); i++) {
+            assertEquals(i, stats.get(i).getGeneration());
+            assertTrue(stats.get(i).getNanos() > 0);
+            assertTrue(stats.get(i).getBestDistance() <= stats.get(i).getMeanDistance());
+            if (i > 0 && i % 5 != 0) {
+                assertTrue(stats.get(i).getBestDistance() <= stats.get(i - 1).getBestDistance());
+            }
+        }
+        Chromosome best = engine.getBest();
+        assertEquals(length(compact, best), best.getDistance(), 1e-6);
+    }
+
+    private static double islands(String map, long seed)
+    {
+        MapGraph graph = SyntheticMaps.load(map);
+        CompactGraph compact = graph.getCompactGraph();
+        GeneticConfig config = new GeneticConfig();
+        config.setGenerations(14);
+        config.setIslands(3);
+        config.setMigrationInterval(4);
+        config.setEventInterval(3);
+        config.setSeed(seed);
+        IslandModel model = new IslandModel(graph, compact.getVertex(0),
+                compact.getVertex(compact.getVertexCount() - 1), config);
+        assertEquals(3, model.getIslandCount());
+        model.run();
+        for (int i = 0; i < model.getIslandCount(); i++) {
+            GeneticEngine island = model.getIsland(i);
+            assertEquals(14, island.getStats().size());
+            assertTrue(model.getBest().getBest().getDistance() <= island.getBest().getDistance());
+            assertEquals(length(compact, island.getBest()), island.getBest().getDistance(), 1e-6);
+        }
+        return model.getBest().getBest().getDistance();
+    }
+
+    @Test
+    public void islandsAreRepeatableAndSeeEveryEvent()
+    {
+        String map = SyntheticMaps.roadLike(8, 5);
+        double first = islands(map, 11);
+        assertEquals(first, islands(map, 11), 0);
+    }
+
+    @Test
+    public void reportsImprovementsAndStopsWhenInterrupted()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.roadLike(8, 4));
+        CompactGraph compact = graph.getCompactGraph();
+        Vertex start = compact.getVertex(0);
+        Vertex end = compact.getVertex(compact.getVertexCount() - 1);
+        PathAlgorithms search = new PathAlgorithms(start, end, graph);
+        search.setSeed(4);
+        List<Stack<Vertex>> improvements = new ArrayList<Stack<Vertex>>();
+        search.geneticAlgorithm(improvements::add);
+        assertTrue(improvements.size() >= 1);
+        for (Stack<Vertex> path: improvements) {
+            assertEquals(start, path.peek());
+            assertEquals(end, path.firstElement());
+        }
+
+        Thread.currentThread().interrupt();
+        try {
+            search.geneticAlgorithm(improvements::add);
+            fail("an interrupted search should stop");
+        }
+        catch (CancellationException e) {
+            assertTrue(Thread.interrupted());
+        }
+    }
+}
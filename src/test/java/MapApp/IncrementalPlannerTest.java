@@ -0,0 +1,77 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.Stack;
+
+import org.junit.Test;
+
+/**
+ * Checks that the incremental planner's route stays a shortest path
+ * while edge weights are raised and lowered under it.
+ */
+public class IncrementalPlannerTest
+{
+    private static double dijkstra(MapGraph graph, int a, int b)
+    {
+        CompactGraph compact = graph.getCompactGraph();
+        SearchWorkspace workspace = compact.acquireWorkspace();
+        try {
+            PathAlgorithms.shortestPathTree(compact, workspace, a);
+            return workspace.getDistance(b);
+        }
+        finally {
+            compact.releaseWorkspace(workspace);
+        }
+    }
+
+    @Test
+    public void repairsRouteAfterWeightChanges()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(30, 5));
+        CompactGraph compact = graph.getCompactGraph();
+        Vertex start = compact.getVertex(0);
+        Vertex end = compact.getVertex(compact.getVertexCount() - 1);
+        IncrementalPlanner planner = new IncrementalPlanner(graph, start, end);
+        Stack<Vertex> first = planner.route();
+        int initial = planner.getExpandedCount();
+        assertEquals(dijkstra(graph, start.getId(), end.getId()), PathAlgorithms.pathLength(graph, first), 1e-6);
+
+        Random random = new Random(8);
+        int repaired = 0;
+        for (int round = 0; round < 40; round++) {
+            for (int i = 0; i < 3; i++) {
+                int edge = random.nextInt(compact.getEdgeCount());
+                /* as random events do: anywhere from 0 to 100 */
+                graph.setEdgeWeight(edge, random.nextDouble() * 100);
+            }
+            Stack<Vertex> path = planner.route();
+            repaired += planner.getExpandedCount();
+            double expected = dijkstra(graph, start.getId(), end.getId());
+            assertEquals(start, path.peek());
+            assertEquals(end, path.firstElement());
+            assertEquals(expected, planner.getDistance(), 1e-6);
+            assertEquals(expected, PathAlgorithms.pathLength(graph, path), 1e-6);
+        }
+        assertTrue("repairs should expand less than searching again", repaired / 40 < initial);
+        planner.close();
+    }
+
+    @Test
+    public void walksBackOverZeroWeightEdges()
+    {
+        /* g is the same on the whole zero-weight chain G - A - B */
+        MapGraph graph = SyntheticMaps.load("VERTICES\nS;0;0\nB;1;0\nA;2;0\nG;3;0\nC;2;1\n\n"
+                + "EDGES\nS;B;1\nG;A;0\nG;C;0\nA;C;0\nA;B;0\n");
+        CompactGraph compact = graph.getCompactGraph();
+        IncrementalPlanner planner = new IncrementalPlanner(graph, compact.getVertex(0), compact.getVertex(3));
+        Stack<Vertex> path = planner.route();
+        assertEquals(compact.getVertex(0), path.peek());
+        assertEquals(compact.getVertex(3), path.firstElement());
+        assertEquals(1, PathAlgorithms.pathLength(graph, path), 0);
+        assertEquals(1, planner.getDistance(), 0);
+        planner.close();
+    }
+}
@@ -0,0 +1,78 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that AStar with landmarks finds shortest paths, including
+ * after edge weights have been changed, and that a closed heuristic
+ * no longer follows the weights.
+ */
+public class LandmarkHeuristicTest
+{
+    private static double dijkstra(MapGraph graph, Vertex a, Vertex b)
+    {
+        CompactGraph compact = graph.getCompactGraph();
+        SearchWorkspace workspace = compact.acquireWorkspace();
+        try {
+            PathAlgorithms.shortestPathTree(compact, workspace, a.getId());
+            return workspace.getDistance(b.getId());
+        }
+        finally {
+            compact.releaseWorkspace(workspace);
+        }
+    }
+
+    private static void checkQueries(MapGraph graph, LandmarkHeuristic landmarks, Random random)
+    {
+        CompactGraph compact = graph.getCompactGraph();
+        for (int i = 0; i < 50; i++) {
+            Vertex a = compact.getVertex(random.nextInt(compact.getVertexCount()));
+            Vertex b = compact.getVertex(random.nextInt(compact.getVertexCount()));
+            PathAlgorithms search = new PathAlgorithms(a, b, graph);
+            search.setHeuristic(landmarks);
+            double length = PathAlgorithms.pathLength(graph, search.AStar());
+            assertEquals(dijkstra(graph, a, b), length, 1e-6);
+            assertTrue(landmarks.estimate(a.getId(), b.getId()) <= length + 1e-6);
+            double bidirectional = PathAlgorithms.pathLength(graph, search.bidirectionalAStar());
+            assertEquals(length, bidirectional, 1e-6);
+        }
+    }
+
+    @Test
+    public void staysExactWhenWeightsChange()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(40, 2));
+        LandmarkHeuristic landmarks = new LandmarkHeuristic(graph, 8);
+        assertEquals(8, landmarks.getLandmarks().length);
+        Random random = new Random(11);
+        checkQueries(graph, landmarks, random);
+        /* weights far below the straight-line length, as random events produce */
+        for (int i = 0; i < 300; i++) {
+            int edge = random.nextInt(graph.getCompactGraph().getEdgeCount());
+            graph.setEdgeWeight(graph.getEdge(edge), random.nextDouble() * (i % 2 == 0 ? 1 : 100));
+        }
+        checkQueries(graph, landmarks, random);
+    }
+
+    @Test
+    public void closeStopsFollowingWeights()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(10, 2));
+        CompactGraph compact = graph.getCompactGraph();
+        LandmarkHeuristic landmarks = new LandmarkHeuristic(graph, 4);
+        int far = compact.getVertexCount() - 1;
+        double estimate = landmarks.estimate(0, far);
+        assertTrue(estimate > 0);
+        landmarks.close();
+        for (int e = 0; e < compact.getEdgeCount(); e++) {
+            graph.setEdgeWeight(graph.getEdge(e), 0);
+        }
+        landmarks.prepare();
+        assertEquals(estimate, landmarks.estimate(0, far), 0);
+    }
+}
@@ -0,0 +1,114 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+/**
+ * Tests for the streaming map file reader, and for the parallel
+ * reader giving the same result.
+ */
+public class MapGraphLoaderTest
+{
+    private static MapGraphLoader read(String text) throws IOException
+    {
+        return MapGraphLoader.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void readsSectionsAndResolvesNames() throws IOException
+    {
+        MapGraphLoader loaded = read("VERTICES\r\nGates Hall;1.5;2\r\nMain Quad;3;-4.25\r\n\r\n"
+                + "EDGES\r\nGates Hall;;Main Quad;7.125\r\nGates Hall;Nowhere;1\r\n");
+        assertEquals(2, loaded.getVertexCount());
+        assertEquals("Gates Hall", loaded.getVertex(0).getName());
+        assertEquals(-4.25, loaded.getVertex(1).getY(), 0);
+        assertEquals(1, loaded.getEdgeCount());
+        assertEquals(0, loaded.getEdgeSource(0));
+        assertEquals(1, loaded.getEdgeTarget(0));
+        assertEquals(7.125, loaded.getEdgeWeight(0), 0);
+        assertEquals(1, loaded.getStats().getSkippedLines());
+        assertEquals(7, loaded.getStats().getLines());
+    }
+
+    @Test
+    public void numbersMatchDoubleParseDouble() throws IOException
+    {
+        String[] numbers = {"0", "12", "0.1", "123.456", "-7.89", "1e3", "3.14159265358979323", " 42 ", "1234567.1234567"};
+        StringBuilder text = new StringBuilder("VERTICES\n");
+        for (int i = 0; i < numbers.length; i++) {
+            text.append('v').append(i).append(';').append(numbers[i]).append(";0\n");
+        }
+        MapGraphLoader loaded = read(text.toString());
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals(Double.parseDouble(numbers[i]), loaded.getVertex(i).getX(), 0);
+        }
+    }
+
+    @Test
+    public void linesLongerThanTheReadBlock() throws IOException
+    {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            name.append('x');
+        }
+        MapGraphLoader loaded = read("VERTICES\n" + name + ";1;2\nB;3;4\n\nEDGES\n" + name + ";B;5");
+        assertEquals(name.toString(), loaded.getVertex(0).getName());
+        assertEquals(1, loaded.getEdgeCount());
+    }
+
+    private static void assertSameMap(MapGraphLoader expected, MapGraphLoader actual)
+    {
+        assertEquals(expected.getVertexCount(), actual.getVertexCount());
+        for (int i = 0; i < expected.getVertexCount(); i++) {
+            assertEquals(expected.getVertex(i).getName(), actual.getVertex(i).getName());
+            assertEquals(expected.getVertex(i).getX(), actual.getVertex(i).getX(), 0);
+            assertEquals(expected.getVertex(i).getY(), actual.getVertex(i).getY(), 0);
+        }
+        assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+        for (int i = 0; i < expected.getEdgeCount(); i++) {
+            assertEquals(expected.getEdgeSource(i), actual.getEdgeSource(i));
+            assertEquals(expected.getEdgeTarget(i), actual.getEdgeTarget(i));
+            assertEquals(expected.getEdgeWeight(i), actual.getEdgeWeight(i), 0);
+        }
+        assertEquals(expected.getStats().getLines(), actual.getStats().getLines());
+        assertEquals(expected.getStats().getBytes(), actual.getStats().getBytes());
+        assertEquals(expected.getStats().getSkippedLines(), actual.getStats().getSkippedLines());
+    }
+
+    private static void checkParallel(String text, int... chunks) throws IOException
+    {
+        File file = MapGraphTest.writeMap();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        MapGraphLoader expected = read(text);
+        for (int chunk: chunks) {
+            for (int threads: new int[] {1, 3}) {
+                assertSameMap(expected, MapGraphLoader.readParallel(file, threads, chunk));
+            }
+        }
+    }
+
+    @Test
+    public void parallelReadMatchesStreaming() throws IOException
+    {
+        checkParallel(SyntheticMaps.generate("road", 3000, 4), 1000, 4096, 1 << 20);
+        checkParallel("header text\r\nVERTICES\r\nA;0;0\r\nbroken\r\nB;1;2\r\nA;5;5\r\nC;3;1\r\n\r\nignored;1;1\r\n"
+                + "EDGES\r\nA;B;1\r\n\r\nB;Nowhere;2\r\nB;;C;2.5\r\nnot an edge\r\nC;A;3", 1, 7, 64, 4096);
+        checkParallel("", 1, 7, 64, 4096);
+        checkParallel("VERTICES\nA;0;0\n", 1, 7, 64, 4096);
+    }
+
+    @Test
+    public void edgesBeforeVerticesMatchStreaming() throws IOException
+    {
+        /* the first edge names vertices that are only defined later */
+        checkParallel("EDGES\nA;B;1\nVERTICES\nA;0;0\nB;1;1\n\nEDGES\nA;B;2\n", 1, 7, 64, 4096);
+        checkParallel("VERTICES\nA;0;0\nB;1;1\n\nEDGES\nA;B;2\nVERTICES\nB;4;4\nC;2;2\n\nEDGES\nA;B;3\nB;C;4\n", 1, 7, 64, 4096);
+    }
+}
@@ -0,0 +1,229 @@
+package MapApp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.junit.Test;
+
+/**
+ * Tests for loading a MapGraph and its CompactGraph view.
+ */
+public class MapGraphTest
+{
+    static File writeMap(String... lines) throws IOException
+    {
+        File file = File.createTempFile("map", ".txt");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file, "UTF-8")) {
+            for (String line: lines) {
+                out.println(line);
+            }
+        }
+        return file;
+    }
+
+    /* A -- B -- D with a longer detour A -- C -- D */
+    static File diamond() throws IOException
+    {
+        return writeMap("VERTICES", "A;0;0", "B;10;0", "C;0;10", "D;20;0", "",
+                "EDGES", "A;B;10", "B;D;10", "A;C;10", "C;D;30");
+    }
+
+    /* A size x size grid with unit spacing and unit weights */
+    static File grid(int size) throws IOException
+    {
+        List<String> lines = new ArrayList<String>();
+        lines.add("VERTICES");
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                lines.add(r + "_" + c + ";" + c + ";" + r);
+            }
+        }
+        lines.add("");
+        lines.add("EDGES");
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                if (c + 1 < size) {
+                    lines.add(r + "_" + c + ";" + r + "_" + (c + 1) + ";1");
+                }
+                if (r + 1 < size) {
+                    lines.add(r + "_" + c + ";" + (r + 1) + "_" + c + ";1");
+                }
+            }
+        }
+        return writeMap(lines.toArray(new String[lines.size()]));
+    }
+
+    static Vertex find(MapGraph graph, String name)
+    {
+        for (Vertex v: graph.getVertices()) {
+            if (v.getName().equals(name)) {
+                return v;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void compactGraphMatchesJGraphT() throws IOException
+    {
+        MapGraph graph = new MapGraph(diamond());
+        CompactGraph compact = graph.getCompactGraph();
+        assertEquals(4, compact.getVertexCount());
+        assertEquals(4, compact.getEdgeCount());
+        for (DefaultWeightedEdge e: graph.getEdges()) {
+            int id = graph.getEdgeId(e);
+            int u = graph.getSource(e).getId();
+            int v = graph.getTarget(e).getId();
+            assertEquals(id, compact.findEdge(u, v));
+            assertEquals(id, compact.findEdge(v, u));
+            assertEquals(graph.getWeight(e), compact.getEdgeWeight(id), 0);
+        }
+        assertEquals(2, compact.getDegree(find(graph, "A").getId()));
+        assertEquals(-1, compact.findEdge(find(graph, "B").getId(), find(graph, "C").getId()));
+    }
+
+    @Test
+    public void weightChangesReachBothDirections() throws IOException
+    {
+        MapGraph graph = new MapGraph(diamond());
+        CompactGraph compact = graph.getCompactGraph();
+        Vertex a = find(graph, "A");
+        Vertex b = find(graph, "B");
+        graph.setEdgeWeight(graph.getEdge(a, b), 42);
+        for (int v: new int[] {a.getId(), b.getId()}) {
+            for (int i = compact.offsets.get(v); i < compact.offsets.get(v + 1); i++) {
+                if (compact.targets.get(i) == a.getId() || compact.targets.get(i) == b.getId()) {
+                    assertEquals(42, compact.weights[i], 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void aStarFollowsShortestPath() throws IOException
+    {
+        MapGraph graph = new MapGraph(diamond());
+        Vertex a = find(graph, "A");
+        Vertex d = find(graph, "D");
+        Stack<Vertex> path = new PathAlgorithms(a, d, graph).AStar();
+        assertEquals(a, path.pop());
+        assertEquals(find(graph, "B"), path.pop());
+        assertEquals(d, path.pop());
+        assertTrue(path.isEmpty());
+    }
+
+    @Test
+    public void repeatedAndConcurrentQueriesAgree() throws Exception
+    {
+        final MapGraph graph = new MapGraph(grid(30));
+        final Vertex a = find(graph, "0_0");
+        final Vertex b = find(graph, "29_29");
+        final Vertex c = find(graph, "0_29");
+        final int first = new PathAlgorithms(a, b, graph).AStar().size();
+        assertEquals(59, first);
+        assertEquals(first, new PathAlgorithms(a, b, graph).AStar().size());
+        assertEquals(30, new PathAlgorithms(c, a, graph).AStar().size());
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 32; i++) {
+                final boolean even = i % 2 == 0;
+                results.add(pool.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        return new PathAlgorithms(even ? a : c, even ? b : a, graph).AStar().size();
+                    }
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i % 2 == 0 ? 59 : 30, (int) results.get(i).get());
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void bidirectionalAStarMatchesAStar()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(60, 4));
+        CompactGraph compact = graph.getCompactGraph();
+        Random random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            Vertex a = compact.getVertex(random.nextInt(compact.getVertexCount()));
+            Vertex b = compact.getVertex(random.nextInt(compact.getVertexCount()));
+            PathAlgorithms search = new PathAlgorithms(a, b, graph);
+            Stack<Vertex> expected = search.findPath(PathAlgorithms.Algorithm.ASTAR);
+            Stack<Vertex> actual = search.findPath(PathAlgorithms.Algorithm.BIDIRECTIONAL_ASTAR);
+            assertEquals(PathAlgorithms.pathLength(graph, expected), PathAlgorithms.pathLength(graph, actual), 1e-6);
+            assertEquals(a, actual.peek());
+            assertTrue(actual.contains(search.getMeetingVertex()));
+            assertEquals(search.getExpandedCount(), search.getForwardExpandedCount() + search.getBackwardExpandedCount());
+        }
+    }
+
+    @Test
+    public void interruptedSearchesStop()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(100, 4));
+        CompactGraph compact = graph.getCompactGraph();
+        PathAlgorithms search = new PathAlgorithms(compact.getVertex(0), compact.getVertex(9999), graph);
+        for (PathAlgorithms.Algorithm algorithm: new PathAlgorithms.Algorithm[] {
+                PathAlgorithms.Algorithm.ASTAR, PathAlgorithms.Algorithm.BIDIRECTIONAL_ASTAR}) {
+            Thread.currentThread().interrupt();
+            try {
+                search.findPath(algorithm);
+                fail(algorithm + " should stop when interrupted");
+            }
+            catch (CancellationException e) {
+                assertTrue(Thread.interrupted());
+            }
+            assertEquals(9999, search.findPath(algorithm).firstElement().getId());
+        }
+    }
+
+    @Test
+    public void resetWeightsRestoresTheLoadedMap() throws IOException
+    {
+        MapGraph graph = new MapGraph(diamond());
+        CompactGraph compact = graph.getCompactGraph();
+        double[] loaded = compact.weights.clone();
+        final List<Integer> changed = new ArrayList<Integer>();
+        graph.addEdgeWeightListener(new EdgeWeightListener()
+        {
+            @Override
+            public void edgeWeightChanged(int edge, double oldWeight, double newWeight)
+            {
+                changed.add(edge);
+            }
+        });
+        graph.resetWeights();
+        assertTrue(changed.isEmpty());
+
+        graph.setEdgeWeight(0, 99);
+        graph.setEdgeWeight(2, 1);
+        graph.setEdgeWeight(2, 5);
+        changed.clear();
+        graph.resetWeights();
+        assertArrayEquals(loaded, compact.weights, 0);
+        assertEquals(2, changed.size());
+        assertEquals(10, graph.getWeight(graph.getEdge(find(graph, "A"), find(graph, "B"))), 0);
+    }
+}
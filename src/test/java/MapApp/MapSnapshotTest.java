@@ -0,0 +1,137 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.junit.Test;
+
+/**
+ * Checks that a MapGraph read back from a snapshot routes exactly
+ * like the graph it was written from, and that a corrupt snapshot is
+ * refused.
+ */
+public class MapSnapshotTest
+{
+    private static File cacheDirectory() throws IOException
+    {
+        File directory = Files.createTempDirectory("snapshots").toFile();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    @Test
+    public void roundTripsTheGraph() throws IOException
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.randomGeometric(2000, 6, 4));
+        File file = File.createTempFile("map", ".snapshot");
+        file.deleteOnExit();
+        MapSnapshot.write(graph, file);
+        MapGraph copy = MapSnapshot.open(file);
+
+        CompactGraph compact = graph.getCompactGraph();
+        CompactGraph copied = copy.getCompactGraph();
+        assertEquals(compact.getVertexCount(), copied.getVertexCount());
+        assertEquals(compact.getEdgeCount(), copied.getEdgeCount());
+        assertEquals(compact.fingerprint(), copied.fingerprint());
+        /* the structure is read from the mapped file, the weights are not */
+        assertTrue(copied.offsets.isDirect() && copied.targets.isDirect() && copied.x.isDirect());
+        File again = File.createTempFile("map", ".snapshot");
+        again.deleteOnExit();
+        MapSnapshot.write(copy, again);
+        assertEquals(compact.fingerprint(), MapSnapshot.open(again).getCompactGraph().fingerprint());
+        Random random = new Random(5);
+        for (int i = 0; i < 50; i++) {
+            int a = random.nextInt(compact.getVertexCount());
+            int b = random.nextInt(compact.getVertexCount());
+            assertEquals(compact.getVertex(a), copied.getVertex(a));
+            assertSame(copied.getVertex(a), copied.getVertex(a));
+            double expected = PathAlgorithms.pathLength(graph,
+                    new PathAlgorithms(compact.getVertex(a), compact.getVertex(b), graph).AStar());
+            double actual = PathAlgorithms.pathLength(copy,
+                    new PathAlgorithms(copied.getVertex(a), copied.getVertex(b), copy).AStar());
+            assertEquals(expected, actual, 1e-9);
+        }
+    }
+
+    @Test
+    public void keepsWeightChangesInBothViews() throws IOException
+    {
+        File text = MapGraphTest.diamond();
+        File directory = cacheDirectory();
+        MapGraph first = MapSnapshot.loadOrCreate(text, directory);
+        MapSnapshot.snapshotFile(text, directory).deleteOnExit();
+        MapGraph graph = MapSnapshot.loadOrCreate(text, directory);
+        assertNotNull(first.getLoadStats());
+        assertNull(graph.getLoadStats());
+        assertEquals(first.getCompactGraph().fingerprint(), graph.getCompactGraph().fingerprint());
+
+        Vertex a = graph.getCompactGraph().getVertex(0);
+        Vertex b = graph.getCompactGraph().getVertex(1);
+        int edge = graph.getCompactGraph().findEdge(a.getId(), b.getId());
+        graph.setEdgeWeight(edge, 42);
+        DefaultWeightedEdge e = graph.getEdge(a, b);
+        assertNotNull(e);
+        assertEquals(edge, graph.getEdgeId(e));
+        assertEquals(42, graph.getWeight(e), 0);
+        graph.setEdgeWeight(e, 7);
+        assertEquals(7, graph.getCompactGraph().getEdgeWeight(edge), 0);
+    }
+
+    @Test
+    public void ignoresSnapshotOfAnOlderText() throws IOException
+    {
+        File text = MapGraphTest.diamond();
+        File directory = cacheDirectory();
+        long modified = text.lastModified();
+        MapSnapshot.loadOrCreate(text, directory);
+        File snapshot = MapSnapshot.snapshotFile(text, directory);
+        snapshot.deleteOnExit();
+        assertTrue(snapshot.isFile());
+        assertNull(MapSnapshot.loadOrCreate(text, directory).getLoadStats());
+
+        /* an edit that keeps the modification time */
+        Files.write(text.toPath(), "VERTICES\nA;0;0\nB;1;0\n\nEDGES\nA;B;3\n".getBytes("UTF-8"));
+        text.setLastModified(modified);
+        MapGraph graph = MapSnapshot.loadOrCreate(text, directory);
+        assertNotNull(graph.getLoadStats());
+        assertEquals(2, graph.getCompactGraph().getVertexCount());
+        assertNull(MapSnapshot.loadOrCreate(text, directory).getLoadStats());
+        assertEquals(2, MapSnapshot.loadOrCreate(text, directory).getCompactGraph().getVertexCount());
+    }
+
+    @Test
+    public void refusesACorruptAdjacency() throws IOException
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(6, 1));
+        CompactGraph compact = graph.getCompactGraph();
+        File file = File.createTempFile("map", ".snapshot");
+        file.deleteOnExit();
+        MapSnapshot.write(graph, file);
+        int n = compact.getVertexCount();
+        int m = compact.getEdgeCount();
+        /* the first target, after the header, the doubles and the offsets */
+        long target = 48 + 8L * (2 * n + 3 * m) + 4L * (n + 1);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(target);
+            raf.write((compact.targets.get(0) + 1) % n);
+        }
+        try {
+            MapSnapshot.open(file);
+            fail("a snapshot with a wrong target should be refused");
+        }
+        catch (IOException e) {
+            assertTrue(e.getMessage().contains("corrupt"));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Checks that rescoring through the edge index changes exactly the
+ * Chromosomes that use the edge, and that selectBest moves the
+ * shortest paths to the front.
+ */
+public class PopulationTest
+{
+    private static int uses(CompactGraph compact, Chromosome c, int edge)
+    {
+        int count = 0;
+        for (int i = 1; i < c.getLength(); i++) {
+            if (compact.findEdge(c.getGene(i - 1), c.getGene(i)) == edge) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void rescoresOnlyChromosomesOnTheEdge()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.roadLike(6, 9));
+        CompactGraph compact = graph.getCompactGraph();
+        Vertex start = compact.getVertex(0);
+        Vertex end = compact.getVertex(compact.getVertexCount() - 1);
+        Population population = new Population(compact, 4);
+        SplittableRandom walks = new SplittableRandom(1);
+        for (int i = 0; i < 300; i++) {
+            population.add(new Chromosome(start, end, graph, walks.split()));
+        }
+
+        Random random = new Random(2);
+        for (int round = 0; round < 50; round++) {
+            /* replaced and mutated members must drop out of the index */
+            Chromosome replaced = population.get(random.nextInt(population.size()));
+            population.set(random.nextInt(population.size()), new Chromosome(start, end, graph, walks.split()));
+            int mutant = random.nextInt(population.size());
+            Chromosome c = population.get(mutant);
+            c.updateDistance(c.mutate(graph, walks));
+            population.reindex(mutant);
+
+            int edge = random.nextInt(compact.getEdgeCount());
+            double delta = random.nextDouble() * 50 - 25;
+            Map<Chromosome, Double> expected = new IdentityHashMap<Chromosome, Double>();
+            for (int i = 0; i < population.size(); i++) {
+                Chromosome member = population.get(i);
+                expected.put(member, member.getDistance() + uses(compact, member, edge) * delta);
+            }
+            double before = replaced.getDistance();
+            population.rescore(edge, delta);
+            for (int i = 0; i < population.size(); i++) {
+                Chromosome member = population.get(i);
+                assertEquals(expected.get(member), member.getDistance(), 1e-9);
+            }
+            if (!expected.containsKey(replaced)) {
+                assertEquals(before, replaced.getDistance(), 0);
+            }
+        }
+
+        population.selectBest(30);
+        double worstElite = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < 30; i++) {
+            worstElite = Math.max(worstElite, population.get(i).getDistance());
+        }
+        for (int i = 30; i < population.size(); i++) {
+            assertTrue(population.get(i).getDistance() >= worstElite);
+        }
+        assertTrue(population.best() < 30);
+    }
+}
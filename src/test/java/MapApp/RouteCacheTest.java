@@ -0,0 +1,114 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.SplittableRandom;
+import java.util.Stack;
+
+import org.junit.Test;
+
+/**
+ * Checks that the route cache answers repeated queries, evicts the
+ * least recently used paths, and drops exactly the paths a weight
+ * change can affect; and that it keeps a few planners that follow the
+ * weights for incremental queries.
+ */
+public class RouteCacheTest
+{
+    private static final PathAlgorithms.Algorithm ASTAR = PathAlgorithms.Algorithm.ASTAR;
+
+    @Test
+    public void repeatedQueriesHitAndWeightChangesEvict()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(12, 3));
+        CompactGraph compact = graph.getCompactGraph();
+        RouteCache cache = new RouteCache(graph, 10000);
+        Vertex a = compact.getVertex(0);
+        Vertex b = compact.getVertex(compact.getVertexCount() - 1);
+        Vertex c = compact.getVertex(5);
+
+        Stack<Vertex> first = cache.route(a, b, ASTAR);
+        Stack<Vertex> expected = new PathAlgorithms(a, b, graph).AStar();
+        assertEquals(expected, first);
+        first.clear();
+        assertEquals(expected, cache.route(a, b, ASTAR));
+        cache.route(a, c, ASTAR);
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        /* heavier edge on the a-b path: only that path goes */
+        int onPath = compact.findEdge(expected.get(expected.size() - 1).getId(), expected.get(expected.size() - 2).getId());
+        Stack<Vertex> toC = cache.route(a, c, ASTAR);
+        boolean shared = false;
+        for (int i = toC.size() - 1; i > 0; i--) {
+            shared |= compact.findEdge(toC.get(i).getId(), toC.get(i - 1).getId()) == onPath;
+        }
+        graph.setEdgeWeight(onPath, compact.getEdgeWeight(onPath) + 500);
+        assertEquals(shared ? 0 : 1, cache.size());
+        Stack<Vertex> rerouted = cache.route(a, b, ASTAR);
+        assertEquals(new PathAlgorithms(a, b, graph).AStar(), rerouted);
+        assertEquals(PathAlgorithms.pathLength(graph, new PathAlgorithms(a, b, graph).AStar()),
+                PathAlgorithms.pathLength(graph, rerouted), 1e-9);
+
+        /* a lighter edge anywhere can shorten any path */
+        int size = cache.size();
+        assertTrue(size > 0);
+        graph.setEdgeWeight(onPath, 0.5);
+        assertEquals(0, cache.size());
+        assertTrue(cache.getInvalidations() >= size);
+        cache.close();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedWhenFull()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(12, 4));
+        CompactGraph compact = graph.getCompactGraph();
+        Vertex start = compact.getVertex(0);
+        Vertex[] ends = {compact.getVertex(1), compact.getVertex(12), compact.getVertex(2)};
+        int[] lengths = new int[ends.length];
+        for (int i = 0; i < ends.length; i++) {
+            lengths[i] = new PathAlgorithms(start, ends[i], graph).AStar().size();
+        }
+        RouteCache cache = new RouteCache(graph, lengths[0] + Math.max(lengths[1], lengths[2]));
+        cache.route(start, ends[0], ASTAR);
+        cache.route(start, ends[1], ASTAR);
+        cache.route(start, ends[0], ASTAR);
+        cache.route(start, ends[2], ASTAR);
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+        long hits = cache.getHits();
+        cache.route(start, ends[0], ASTAR);
+        assertEquals("the most recently used path should survive", hits + 1, cache.getHits());
+        cache.route(start, ends[1], ASTAR);
+        assertEquals(hits + 1, cache.getHits());
+        cache.close();
+    }
+
+    @Test
+    public void incrementalQueriesKeepTheirPlanners()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(15, 5));
+        CompactGraph compact = graph.getCompactGraph();
+        RouteCache cache = new RouteCache(graph, 10000);
+        Vertex a = compact.getVertex(0);
+        Vertex b = compact.getVertex(compact.getVertexCount() - 1);
+        SplittableRandom random = new SplittableRandom(8);
+        for (int i = 0; i < 20; i++) {
+            Stack<Vertex> path = cache.route(a, b, PathAlgorithms.Algorithm.INCREMENTAL);
+            assertEquals(a, path.peek());
+            assertEquals(PathAlgorithms.pathLength(graph, new PathAlgorithms(a, b, graph).AStar()),
+                    PathAlgorithms.pathLength(graph, path), 1e-9);
+            graph.randomEvent(random);
+        }
+        assertEquals(1, cache.getPlannerCount());
+        assertEquals(0, cache.size());
+        for (int i = 1; i <= 6; i++) {
+            cache.route(a, compact.getVertex(i), PathAlgorithms.Algorithm.INCREMENTAL);
+        }
+        assertEquals(4, cache.getPlannerCount());
+        cache.close();
+        assertEquals(0, cache.getPlannerCount());
+    }
+}
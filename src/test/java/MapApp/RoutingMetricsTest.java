@@ -0,0 +1,122 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * Checks that searches, including contraction hierarchy queries,
+ * generations and map loads add up in the process-wide
+ * RoutingMetrics, that they can be read over JMX, and that nothing
+ * is recorded while the metrics are turned off. The metrics are
+ * shared, so only differences are compared.
+ */
+public class RoutingMetricsTest
+{
+    private final RoutingMetrics metrics = RoutingMetrics.get();
+
+    @Test
+    public void searchesAddTheirWork()
+    {
+        long loads = metrics.getMapLoads();
+        long lines = metrics.getLoadedLines();
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(20, 1));
+        CompactGraph compact = graph.getCompactGraph();
+        assertEquals(loads + 1, metrics.getMapLoads());
+        assertEquals(lines + graph.getLoadStats().getLines(), metrics.getLoadedLines());
+
+        long searches = metrics.getSearches();
+        long expanded = metrics.getVerticesExpanded();
+        long pushes = metrics.getHeapPushes();
+        long decreases = metrics.getDecreaseKeys();
+        long relaxations = metrics.getRelaxations();
+        PathAlgorithms search = new PathAlgorithms(compact.getVertex(0), compact.getVertex(399), graph);
+        search.AStar();
+        assertEquals(searches + 1, metrics.getSearches());
+        assertEquals(expanded + search.getExpandedCount(), metrics.getVerticesExpanded());
+        assertEquals(pushes + search.getHeapPushes(), metrics.getHeapPushes());
+        assertEquals(decreases + search.getDecreaseKeys(), metrics.getDecreaseKeys());
+        assertEquals(relaxations + search.getRelaxations(), metrics.getRelaxations());
+        assertTrue(search.getRelaxations() >= search.getExpandedCount());
+
+        int first = search.getExpandedCount();
+        search.bidirectionalAStar();
+        assertEquals(searches + 2, metrics.getSearches());
+        assertEquals(expanded + first + search.getExpandedCount(), metrics.getVerticesExpanded());
+        assertTrue(metrics.getSearchMaxMillis() > 0);
+    }
+
+    @Test
+    public void contractionHierarchyQueriesAddTheirWork()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(20, 1));
+        CompactGraph compact = graph.getCompactGraph();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph);
+        long searches = metrics.getSearches();
+        long expanded = metrics.getVerticesExpanded();
+        long pushes = metrics.getHeapPushes();
+        long relaxations = metrics.getRelaxations();
+        PathAlgorithms search = new PathAlgorithms(compact.getVertex(0), compact.getVertex(399), graph);
+        search.contractionHierarchy(hierarchy);
+        assertTrue(search.getExpandedCount() > 0);
+        assertTrue(search.getHeapPushes() >= search.getExpandedCount());
+        assertEquals(searches + 1, metrics.getSearches());
+        assertEquals(expanded + search.getExpandedCount(), metrics.getVerticesExpanded());
+        assertEquals(pushes + search.getHeapPushes(), metrics.getHeapPushes());
+        assertEquals(relaxations + search.getRelaxations(), metrics.getRelaxations());
+    }
+
+    @Test
+    public void generationsCountCrossovers()
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(8, 1));
+        CompactGraph compact = graph.getCompactGraph();
+        GeneticConfig config = new GeneticConfig();
+        config.setGenerations(6);
+        config.setPopulationSize(40);
+        config.setSeed(3L);
+        PathAlgorithms search = new PathAlgorithms(compact.getVertex(0), compact.getVertex(63), graph);
+        search.setGeneticConfig(config);
+        long generations = metrics.getGenerations();
+        long crossovers = metrics.getCrossovers();
+        search.geneticAlgorithm();
+        assertEquals(generations + search.getGenerationStats().size() * config.islandsFor(Runtime.getRuntime().availableProcessors()),
+                metrics.getGenerations());
+        assertTrue(metrics.getCrossovers() > crossovers);
+        assertTrue(metrics.getCrossoverSuccessRate() >= 0 && metrics.getCrossoverSuccessRate() <= 1);
+        assertTrue(metrics.getGenerationMeanMillis() > 0);
+    }
+
+    @Test
+    public void publishedOverJmxAndCanBeTurnedOff() throws Exception
+    {
+        RoutingMetrics.register();
+        RoutingMetrics.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(RoutingMetrics.OBJECT_NAME);
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(5, 1));
+        CompactGraph compact = graph.getCompactGraph();
+        PathAlgorithms search = new PathAlgorithms(compact.getVertex(0), compact.getVertex(24), graph);
+        search.AStar();
+        assertEquals(metrics.getSearches(), server.getAttribute(name, "Searches"));
+        assertEquals(9, ((String[]) server.getAttribute(name, "Latencies")).length);
+
+        server.setAttribute(name, new Attribute("Enabled", false));
+        try {
+            long searches = metrics.getSearches();
+            search.AStar();
+            assertEquals(searches, metrics.getSearches());
+        }
+        finally {
+            metrics.setEnabled(true);
+        }
+        assertTrue(metrics.isEnabled());
+    }
+}
@@ -0,0 +1,166 @@
+package MapApp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Talks to the routing server over loopback: routes and matrices
+ * match the in-process searches, bad requests get 4xx, and while the
+ * worker is busy identical requests share one answer and requests
+ * past the queue are turned away with 503.
+ */
+public class RoutingServerTest
+{
+    private static String[] get(int port, String path) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int n; (n = in.read(buffer)) > 0;) {
+            body.write(buffer, 0, n);
+        }
+        in.close();
+        return new String[] {Integer.toString(status), new String(body.toByteArray(), StandardCharsets.UTF_8),
+                connection.getHeaderField("Retry-After")};
+    }
+
+    @Test
+    public void answersRoutesAndMatrices() throws Exception
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(10, 9));
+        CompactGraph compact = graph.getCompactGraph();
+        RoutingServer server = new RoutingServer(graph, 0, 2, 16);
+        server.start();
+        try {
+            int port = server.getPort();
+            String[] route = get(port, "/route?from=g0&to=g99");
+            assertEquals("200", route[0]);
+            double distance = PathAlgorithms.pathLength(graph,
+                    new PathAlgorithms(compact.getVertex(0), compact.getVertex(99), graph).AStar());
+            assertTrue(route[1], route[1].startsWith("{\"from\":\"g0\",\"to\":\"g99\",\"distance\":" + distance + ",\"path\":[\"g0\","));
+            assertTrue(route[1].endsWith("\"g99\"]}"));
+
+            String[] matrix = get(port, "/matrix?sources=g0,g5&targets=g99");
+            assertEquals("200", matrix[0]);
+            DistanceMatrix expected = DistanceMatrix.compute(graph, Arrays.asList(compact.getVertex(0), compact.getVertex(5)),
+                    Collections.singletonList(compact.getVertex(99)), false);
+            assertEquals("{\"sources\":[\"g0\",\"g5\"],\"targets\":[\"g99\"],\"distances\":[[" + expected.get(0, 0)
+                    + "],[" + expected.get(1, 0) + "]]}", matrix[1]);
+
+            assertEquals(route[1], get(port, "/route?fromX=2&fromY=-3&toX=89&toY=91")[1]);
+            assertEquals("{\"vertices\":[\"g11\",\"g12\"]}", get(port, "/nearest?x=11&y=10.5&k=2")[1]);
+
+            assertEquals("404", get(port, "/route?from=g0&to=nowhere")[0]);
+            assertEquals("400", get(port, "/route?from=g0")[0]);
+            assertEquals("400", get(port, "/route?from=g0&to=g1&algorithm=genetic")[0]);
+            server.setMaxMatrixCells(4);
+            assertEquals("200", get(port, "/matrix?sources=g0,g5&targets=g98,g99")[0]);
+            assertEquals("413", get(port, "/matrix?sources=g0,g5,g7&targets=g98,g99")[0]);
+            assertEquals("200", get(port, "/status")[0]);
+        }
+        finally {
+            server.stop();
+        }
+    }
+
+    private static Future<String[]> getLater(ExecutorService clients, final int port, final String path)
+    {
+        return clients.submit(new Callable<String[]>()
+        {
+            @Override
+            public String[] call() throws IOException
+            {
+                return get(port, path);
+            }
+        });
+    }
+
+    /* waits for the server to reach a state that a request leads to */
+    private static void await(Callable<Boolean> condition) throws Exception
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.call()) {
+            assertTrue("the server did not get there in time", System.nanoTime() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void coalescesWhileBusyAndTurnsAwayOverflow() throws Exception
+    {
+        MapGraph graph = SyntheticMaps.load(SyntheticMaps.grid(10, 3));
+        final RoutingServer server = new RoutingServer(graph, 0, 1, 2);
+        server.start();
+        final ThreadPoolExecutor workers = server.getWorkers();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService clients = Executors.newCachedThreadPool();
+        try {
+            int port = server.getPort();
+            /* keeps the only worker busy until released */
+            workers.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            started.await();
+
+            String repeated = "/route?from=g0&to=g99";
+            List<Future<String[]>> same = new ArrayList<Future<String[]>>();
+            same.add(getLater(clients, port, repeated));
+            await(() -> workers.getQueue().size() == 1);
+            for (int i = 0; i < 3; i++) {
+                same.add(getLater(clients, port, repeated));
+            }
+            await(() -> server.getCoalescedCount() == 3);
+            Future<String[]> other = getLater(clients, port, "/route?from=g5&to=g90");
+            await(() -> workers.getQueue().size() == 2);
+
+            String[] turnedAway = get(port, "/route?from=g1&to=g98");
+            assertEquals("503", turnedAway[0]);
+            assertEquals("1", turnedAway[2]);
+            assertEquals(1, server.getRejectedCount());
+
+            release.countDown();
+            String[] first = same.get(0).get();
+            assertEquals("200", first[0]);
+            for (Future<String[]> response: same) {
+                assertEquals(first[1], response.get()[1]);
+            }
+            assertEquals("200", other.get()[0]);
+            assertEquals(3, server.getCoalescedCount());
+            assertEquals(1, server.getRejectedCount());
+        }
+        finally {
+            release.countDown();
+            clients.shutdown();
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package MapApp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks nearest, k-nearest and range queries of the k-d tree
+ * against a scan over every vertex, on a map with scattered points
+ * and on a grid, where many points share a coordinate.
+ */
+public class SpatialIndexTest
+{
+    private static void check(CompactGraph compact, Random random)
+    {
+        SpatialIndex index = new SpatialIndex(compact);
+        int n = compact.getVertexCount();
+        assertEquals(n, index.size());
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 1200 - 100;
+            double y = random.nextDouble() * 1200 - 100;
+            double[] distances = new double[n];
+            for (int v = 0; v < n; v++) {
+                distances[v] = Math.hypot(compact.getX(v) - x, compact.getY(v) - y);
+            }
+            double[] sorted = distances.clone();
+            Arrays.sort(sorted);
+
+            assertEquals(sorted[0], distances[index.nearest(x, y)], 0);
+            int k = 1 + random.nextInt(12);
+            int[] nearest = index.nearest(x, y, k);
+            assertEquals(Math.min(k, n), nearest.length);
+            for (int i = 0; i < nearest.length; i++) {
+                assertEquals(sorted[i], distances[nearest[i]], 0);
+            }
+
+            double width = random.nextDouble() * 300;
+            double height = random.nextDouble() * 300;
+            int[] found = index.range(x, y, x + width, y + height);
+            Arrays.sort(found);
+            int[] expected = new int[n];
+            int count = 0;
+            for (int v = 0; v < n; v++) {
+                if (compact.getX(v) >= x && compact.getX(v) <= x + width && compact.getY(v) >= y && compact.getY(v) <= y + height) {
+                    expected[count++] = v;
+                }
+            }
+            assertArrayEquals(Arrays.copyOf(expected, count), found);
+        }
+    }
+
+    @Test
+    public void matchesLinearScan()
+    {
+        Random random = new Random(20);
+        check(SyntheticMaps.load(SyntheticMaps.randomGeometric(2000, 6, 20)).getCompactGraph(), random);
+        check(SyntheticMaps.load(SyntheticMaps.grid(40, 20)).getCompactGraph(), random);
+        check(SyntheticMaps.load(SyntheticMaps.grid(2, 20)).getCompactGraph(), random);
+    }
+}
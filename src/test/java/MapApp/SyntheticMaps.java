@@ -0,0 +1,203 @@
+package MapApp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generators for maps in the VERTICES/EDGES text format, used by
+ * the tests and benchmarks. Edge weights are the straight-line length
+ * of the edge times a random factor of at least 1, so the Euclidean
+ * heuristic stays admissible.
+ */
+public final class SyntheticMaps
+{
+    private SyntheticMaps()
+    {
+    }
+
+    /* side x side grid with 10 units between neighbours */
+    public static String grid(int side, long seed)
+    {
+        Random random = new Random(seed);
+        StringBuilder text = new StringBuilder("VERTICES\n");
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                text.append('g').append(r * side + c).append(';').append(10 * c).append(';').append(10 * r).append('\n');
+            }
+        }
+        text.append("\nEDGES\n");
+        for (int r = 0; r < side; r++) {
+            for (int c = 0; c < side; c++) {
+                int v = r * side + c;
+                if (c + 1 < side) {
+                    edge(text, "g", v, v + 1, 10 * (1 + random.nextDouble()));
+                }
+                if (r + 1 < side) {
+                    edge(text, "g", v, v + side, 10 * (1 + random.nextDouble()));
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /* n points in a square, each connected to the points closer than radius
+     * (bucketed so that generation stays near linear) */
+    public static String randomGeometric(int n, double averageDegree, long seed)
+    {
+        Random random = new Random(seed);
+        double size = 1000;
+        double radius = Math.sqrt(averageDegree * size * size / (Math.PI * n));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        StringBuilder text = new StringBuilder("VERTICES\n");
+        for (int i = 0; i < n; i++) {
+            x[i] = size * random.nextDouble();
+            y[i] = size * random.nextDouble();
+            text.append('r').append(i).append(';').append(x[i]).append(';').append(y[i]).append('\n');
+        }
+        text.append("\nEDGES\n");
+        int cells = Math.max(1, (int) (size / radius));
+        int[] head = new int[cells * cells];
+        int[] next = new int[n];
+        Arrays.fill(head, -1);
+        for (int i = 0; i < n; i++) {
+            int cell = cell(x[i], size, cells) * cells + cell(y[i], size, cells);
+            next[i] = head[cell];
+            head[cell] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            int cx = cell(x[i], size, cells);
+            int cy = cell(y[i], size, cells);
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    int gx = cx + dx;
+                    int gy = cy + dy;
+                    if (gx < 0 || gy < 0 || gx >= cells || gy >= cells) {
+                        continue;
+                    }
+                    for (int j = head[gx * cells + gy]; j >= 0; j = next[j]) {
+                        double length = Math.hypot(x[i] - x[j], y[i] - y[j]);
+                        if (j > i && length <= radius) {
+                            edge(text, "r", i, j, length * (1 + 0.5 * random.nextDouble()));
+                        }
+                    }
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /* A road network: a jittered grid of side x side intersections,
+     * thinned to a random spanning tree plus some of the other roads,
+     * with every road split into a chain of 1 to 4 segments. Most
+     * vertices end up with degree 2, as on real maps. */
+    public static String roadLike(int side, long seed)
+    {
+        Random random = new Random(seed);
+        int junctions = side * side;
+        List<double[]> points = new ArrayList<double[]>();
+        for (int i = 0; i < junctions; i++) {
+            points.add(new double[] {10 * (i % side) + 6 * random.nextDouble(), 10 * (i / side) + 6 * random.nextDouble()});
+        }
+        List<int[]> roads = new ArrayList<int[]>();
+        for (int v = 0; v < junctions; v++) {
+            if ((v + 1) % side != 0) {
+                roads.add(new int[] {v, v + 1});
+            }
+            if (v + side < junctions) {
+                roads.add(new int[] {v, v + side});
+            }
+        }
+        Collections.shuffle(roads, random);
+        int[] parent = new int[junctions];
+        for (int v = 0; v < junctions; v++) {
+            parent[v] = v;
+        }
+        List<int[]> edges = new ArrayList<int[]>();
+        for (int[] road: roads) {
+            int a = root(parent, road[0]);
+            int b = root(parent, road[1]);
+            if (a != b) {
+                parent[a] = b;
+            }
+            else if (random.nextDouble() >= 0.4) {
+                continue;
+            }
+            int segments = 1 + random.nextInt(4);
+            int previous = road[0];
+            double[] from = points.get(road[0]);
+            double[] to = points.get(road[1]);
+            for (int k = 1; k < segments; k++) {
+                double t = (double) k / segments;
+                points.add(new double[] {from[0] + t * (to[0] - from[0]) + random.nextDouble() - 0.5,
+                        from[1] + t * (to[1] - from[1]) + random.nextDouble() - 0.5});
+                edges.add(new int[] {previous, points.size() - 1});
+                previous = points.size() - 1;
+            }
+            edges.add(new int[] {previous, road[1]});
+        }
+        StringBuilder text = new StringBuilder("VERTICES\n");
+        for (int i = 0; i < points.size(); i++) {
+            text.append('w').append(i).append(';').append(points.get(i)[0]).append(';').append(points.get(i)[1]).append('\n');
+        }
+        text.append("\nEDGES\n");
+        for (int[] edge: edges) {
+            double[] a = points.get(edge[0]);
+            double[] b = points.get(edge[1]);
+            edge(text, "w", edge[0], edge[1], Math.hypot(a[0] - b[0], a[1] - b[1]) * (1 + 0.2 * random.nextDouble()));
+        }
+        return text.toString();
+    }
+
+    /* One of the maps above by name ("grid", "geometric" or "road"),
+     * with roughly the given number of vertices */
+    public static String generate(String shape, int vertices, long seed)
+    {
+        switch (shape) {
+        case "grid":
+            return grid((int) Math.round(Math.sqrt(vertices)), seed);
+        case "geometric":
+            return randomGeometric(vertices, 6, seed);
+        case "road":
+            return roadLike((int) Math.max(2, Math.round(Math.sqrt(vertices / 3.0))), seed);
+        default:
+            throw new IllegalArgumentException("unknown map shape " + shape);
+        }
+    }
+
+    private static int root(int[] parent, int v)
+    {
+        while (parent[v] != v) {
+            parent[v] = parent[parent[v]];
+            v = parent[v];
+        }
+        return v;
+    }
+
+    private static int cell(double value, double size, int cells)
+    {
+        return Math.min(cells - 1, (int) (value / size * cells));
+    }
+
+    private static void edge(StringBuilder text, String prefix, int u, int v, double weight)
+    {
+        text.append(prefix).append(u).append(';').append(prefix).append(v).append(';').append(weight).append('\n');
+    }
+
+    public static MapGraph load(String text)
+    {
+        try {
+            return new MapGraph(MapGraphLoader.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8))));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}